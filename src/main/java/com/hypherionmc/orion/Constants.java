@@ -6,9 +6,8 @@
  */
 package com.hypherionmc.orion;
 
-import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author HypherionSA
@@ -29,9 +28,5 @@ public class Constants {
     public static final String MAVEN_URL = "https://maven.firstdark.dev/releases";
     public static final String MAVEN_SNAPSHOT_URL = "https://maven.firstdark.dev/snapshots";
     public static final String MAVEN_CENTRAL_URL = "https://mcentral.firstdark.dev/releases";
-
-    // Porting Patcher
-    public static final Path patcherUpstream = Paths.get("upstream");
-    public static final Path patcherWorkdir = Paths.get("workspace");
-    public static final File patcherCommit = new File("commit.sha");
+    public static final List<String> MAVEN_GROUPS = Arrays.asList("com\\.hypherionmc(\\..*)?", "me\\.hypherionmc(\\..*)?", "dev\\.firstdark(\\..*)?");
 }
@@ -8,17 +8,23 @@ package com.hypherionmc.orion.plugin;
 
 import com.hypherionmc.orion.Constants;
 import com.hypherionmc.orion.utils.Environment;
+import com.hypherionmc.orion.utils.GitBuildNumber;
 import com.hypherionmc.orion.utils.GradleUtils;
 import groovy.lang.Closure;
 import groovy.lang.DelegatesTo;
+import lombok.AccessLevel;
 import lombok.Getter;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.util.internal.ConfigureUtil;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.util.ArrayList;
+
 /**
  * @author HypherionSA
  * Main Gradle plugin extension. Using this is optional for most part
@@ -27,19 +33,25 @@ import org.jetbrains.annotations.Nullable;
 public class OrionExtension {
 
     // Properties
-    private final Versioning versioning = new Versioning();
+    private final Versioning versioning;
     private final Tools tools = new Tools();
     private final Property<Boolean> enableReleasesMaven;
     private final Property<Boolean> enableSnapshotsMaven;
     private final Property<Boolean> enableMirrorMaven;
+    private final ListProperty<String> releasesMavenGroups;
+    private final ListProperty<String> snapshotsMavenGroups;
+    private final ListProperty<String> mirrorMavenGroups;
     private final Property<Boolean> multiProject;
     private final Property<String> dopplerToken;
+    private final Property<Boolean> skipUnchangedPublishing;
+    private final Property<Integer> publishingConnections;
 
     // Project Reference
     private final Project project;
 
     public OrionExtension(Project project) {
         this.project = project;
+        this.versioning = new Versioning(project.getRootProject().getRootDir());
 
         // Try to configure versioning from gradle properties
         if (project.hasProperty("version_major"))
@@ -65,8 +77,19 @@ public class OrionExtension {
         this.enableReleasesMaven = project.getObjects().property(Boolean.class).convention(false);
         this.enableSnapshotsMaven = project.getObjects().property(Boolean.class).convention(false);
         this.enableMirrorMaven = project.getObjects().property(Boolean.class).convention(false);
+
+        // Group regexes served by each maven. Empty by default, which disables filtering for that maven
+        this.releasesMavenGroups = project.getObjects().listProperty(String.class).convention(new ArrayList<>());
+        this.snapshotsMavenGroups = project.getObjects().listProperty(String.class).convention(new ArrayList<>());
+        this.mirrorMavenGroups = project.getObjects().listProperty(String.class).convention(new ArrayList<>());
         this.multiProject = project.getObjects().property(Boolean.class).convention(false);
         this.dopplerToken = project.getObjects().property(String.class).convention("INVALID");
+
+        // Skip publishing publications whose artifacts are all published with the same checksums. A publication is skipped
+        // or uploaded as a whole. Archives are built reproducibly when enabled. Connections limit the checksum requests,
+        // and how many publish tasks run at once
+        this.skipUnchangedPublishing = project.getObjects().property(Boolean.class).convention(false);
+        this.publishingConnections = project.getObjects().property(Integer.class).convention(4);
     }
 
     /**
@@ -81,6 +104,15 @@ public class OrionExtension {
         action.execute(tools);
     }
 
+    /**
+     * Only resolve the First Dark Dev groups from the releases and snapshots mavens.
+     * Dependencies of any other group are no longer looked up in these mavens
+     */
+    public void filterMavenGroups() {
+        releasesMavenGroups.set(Constants.MAVEN_GROUPS);
+        snapshotsMavenGroups.set(Constants.MAVEN_GROUPS);
+    }
+
     /**
      * Helper method to force the plugin to configure and apply everything early
      */
@@ -128,6 +160,15 @@ public class OrionExtension {
         private int build = 0;
         private String identifier = "release";
         private boolean isUploadBuild = false;
+        private boolean isGitBuild = false;
+        private boolean isBuildSet = false;
+
+        @Getter(AccessLevel.NONE)
+        private final File rootDir;
+
+        Versioning(File rootDir) {
+            this.rootDir = rootDir;
+        }
 
         /**
          * Manually configure the MAJOR version value
@@ -159,6 +200,15 @@ public class OrionExtension {
          */
         public void build(int build) {
             this.build = build;
+            this.isBuildSet = true;
+        }
+
+        /**
+         * Use the number of commits since the last git tag as the BUILD version value,
+         * when no build number is supplied by CI or the version_build property
+         */
+        public void gitBuild() {
+            this.isGitBuild = true;
         }
 
         public void uploadBuild(boolean val) {
@@ -179,6 +229,11 @@ public class OrionExtension {
          * @return Semver Version. For example: 1.0.0+port.1
          */
         public String buildVersion() {
+            if (isGitBuild && !isBuildSet) {
+                this.build = GitBuildNumber.INSTANCE.getBuildNumber(rootDir);
+                this.isBuildSet = true;
+            }
+
             String v = "%s.%s.%s";
 
             if (!isUploadBuild) {
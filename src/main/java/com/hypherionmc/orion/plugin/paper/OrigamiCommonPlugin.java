@@ -0,0 +1,48 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.plugin.paper;
+
+import com.hypherionmc.orion.task.paper.BeforeCompileTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.tasks.TaskProvider;
+
+import java.util.ArrayList;
+
+/**
+ * @author HypherionSA
+ * Applied to the common project of an Origami build. Prepares the common sources once, and shares them with
+ * the plugin projects through the origamiSources configuration, so they never touch the common project directly
+ */
+public class OrigamiCommonPlugin implements Plugin<Project> {
+
+    public static final String CONFIGURATION = "origamiSources";
+    public static final String TASK = "prepareOrigamiSources";
+
+    @Override
+    public void apply(Project target) {
+        TaskProvider<BeforeCompileTask> prepareSources = target.getTasks().register(TASK, BeforeCompileTask.class, t -> {
+            t.getSourcesFolder().set(target.getLayout().getProjectDirectory().dir("src/main"));
+            t.getExcludedPackages().set(new ArrayList<>());
+            t.getExcludedResources().set(new ArrayList<>());
+            t.getDestFolder().set(target.getLayout().getBuildDirectory().dir("origami"));
+        });
+
+        Configuration sources = target.getConfigurations().create(CONFIGURATION, c -> {
+            c.setCanBeConsumed(true);
+            c.setCanBeResolved(false);
+        });
+        sources.getOutgoing().artifact(prepareSources.flatMap(BeforeCompileTask::getDestFolder), a -> a.builtBy(prepareSources));
+
+        target.afterEvaluate(p -> {
+            if (!p.getPlugins().hasPlugin("java"))
+                throw new GradleException("Origami common project " + p.getPath() + " must apply the java plugin");
+        });
+    }
+}
@@ -1,18 +1,65 @@
 package com.hypherionmc.orion.plugin.paper;
 
-import com.hypherionmc.orion.task.paper.BeforeCompileTask;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.Sync;
 import org.gradle.api.tasks.TaskProvider;
 import org.gradle.api.tasks.compile.JavaCompile;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class OrigamiPlugin implements Plugin<Project> {
 
     @Override
     public void apply(Project target) {
-        target.getExtensions().create("origami", OrigamiExtension.class, target);
+        OrigamiExtension extension = target.getExtensions().create("origami", OrigamiExtension.class, target);
+
+        // The common sources are prepared once by the common project, and only filtered here
+        Configuration commonSources = target.getConfigurations().create("origamiCommonSources", c -> {
+            c.setCanBeConsumed(false);
+            c.setCanBeResolved(true);
+        });
+        commonSources.getDependencies().addLater(extension.getCommonProject().map(name -> {
+            Map<String, String> notation = new HashMap<>();
+            notation.put("path", name.startsWith(":") ? name : ":" + name);
+            notation.put("configuration", OrigamiCommonPlugin.CONFIGURATION);
+            return target.getDependencies().project(notation);
+        }));
+
+        final ListProperty<String> excludedPackages = extension.getExcludedPackages();
+        final ListProperty<String> excludedResources = extension.getExcludedResources();
+        final TaskProvider<Sync> preparePluginSources = target.getTasks().register("preparePluginSources", Sync.class, t -> {
+            t.from(commonSources);
+            t.into(target.getLayout().getBuildDirectory().dir("origami"));
+            t.exclude(details -> {
+                String path = details.getRelativePath().getPathString();
+
+                for (String excludedPackage : excludedPackages.get()) {
+                    if (isWithin(path, "java/" + excludedPackage.replace(".", "/")))
+                        return true;
+                }
+
+                for (String excludedResource : excludedResources.get()) {
+                    if (isWithin(path, "resources/" + excludedResource))
+                        return true;
+                }
+
+                return false;
+            });
+            t.getInputs().property("excludedPackages", excludedPackages);
+            t.getInputs().property("excludedResources", excludedResources);
+        });
+        target.getTasks().withType(JavaCompile.class).configureEach(t -> t.dependsOn(preparePluginSources));
+
+        target.getPlugins().withId("java", j -> target.getExtensions().getByType(SourceSetContainer.class).getByName("main").getJava()
+                .srcDir(preparePluginSources.map(t -> t.getDestinationDir().toPath().resolve("java").toFile())));
+    }
 
-        final TaskProvider<BeforeCompileTask> preparePluginSources = target.getTasks().register("preparePluginSources", BeforeCompileTask.class);
-        target.getTasks().withType(JavaCompile.class).forEach(t -> t.dependsOn(preparePluginSources));
+    private static boolean isWithin(String path, String excluded) {
+        return path.equals(excluded) || path.startsWith(excluded + "/");
     }
 }
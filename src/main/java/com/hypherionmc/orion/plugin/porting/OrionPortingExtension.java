@@ -7,13 +7,18 @@
 package com.hypherionmc.orion.plugin.porting;
 
 import codechicken.diffpatch.util.PatchMode;
+import com.hypherionmc.orion.utils.diff.DiffEngines;
 import lombok.Getter;
 import org.gradle.api.Project;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
 import org.gradle.api.provider.Property;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,6 +32,20 @@ public class OrionPortingExtension {
     private final Property<String> upstreamBranch;
     private final ListProperty<String> portingBranches;
     private final Property<PatchMode> patchMode;
+    private final Property<Boolean> asyncCleanup;
+    private final Property<Boolean> bundlePatches;
+    private final Property<Integer> packedGitLimit;
+    private final Property<Integer> deltaBaseCacheLimit;
+    private final ListProperty<String> diffIgnore;
+    private final Property<Boolean> useGitIgnore;
+    private final Property<Boolean> snapshotCache;
+    private final Property<Integer> snapshotCacheSize;
+    private final Property<String> diffEngine;
+    private final MapProperty<String, String> branchDiffEngines;
+    private final Property<Boolean> detectRenames;
+    private final Property<Integer> renameScore;
+    private final DirectoryProperty scratchDir;
+    private final Property<Boolean> pipelinedSetup;
 
     private final Project project;
 
@@ -35,6 +54,37 @@ public class OrionPortingExtension {
         this.upstreamBranch = project.getObjects().property(String.class).convention("INVALID");
         this.patchMode = project.getObjects().property(PatchMode.class).convention(PatchMode.EXACT);
         this.portingBranches = project.getObjects().listProperty(String.class).convention(new ArrayList<>());
+        this.asyncCleanup = project.getObjects().property(Boolean.class).convention(false);
+        this.bundlePatches = project.getObjects().property(Boolean.class).convention(false);
+
+        // JGit cache limits, in megabytes. Unset keeps the JGit defaults. The JGit cache is shared by everything in the
+        // Gradle daemon, so the limits apply to other builds and plugins in the daemon too, until the build finishes
+        this.packedGitLimit = project.getObjects().property(Integer.class);
+        this.deltaBaseCacheLimit = project.getObjects().property(Integer.class);
+
+        // Gitignore style rules for files that are never diffed. The defaults are anchored to the root of the branch,
+        // so source packages named like them are still diffed
+        this.diffIgnore = project.getObjects().listProperty(String.class).convention(Arrays.asList("/.idea/", "/.gradle/", "/build/", "/run/", "/out/", "/logs/", "/artifacts/"));
+        this.useGitIgnore = project.getObjects().property(Boolean.class).convention(false);
+
+        // Cache of extracted upstream commits in the gradle user home. Size is in megabytes
+        this.snapshotCache = project.getObjects().property(Boolean.class).convention(false);
+        this.snapshotCacheSize = project.getObjects().property(Integer.class).convention(2048);
+
+        // Diff engine used to generate patches, optionally overridden per branch
+        this.diffEngine = project.getObjects().property(String.class).convention(DiffEngines.DEFAULT);
+        this.branchDiffEngines = project.getObjects().mapProperty(String.class, String.class).convention(new HashMap<>());
+
+        // Record moved files as renames, instead of a delete and a full add. Score is the minimum similarity in percent.
+        // Off by default, since it compares every added file against every removed one
+        this.detectRenames = project.getObjects().property(Boolean.class).convention(false);
+        this.renameScore = project.getObjects().property(Integer.class).convention(60);
+
+        // Root of the upstream, workspace, rejects and tmp directories. Can be moved to a faster disk, or a tmpfs
+        this.scratchDir = project.getObjects().directoryProperty().convention(project.getLayout().getProjectDirectory());
+
+        // Patch the working directories of all branches while checkoutUpstream extracts the upstream commit
+        this.pipelinedSetup = project.getObjects().property(Boolean.class).convention(false);
     }
 
     public void porting(String value) {
@@ -44,4 +94,40 @@ public class OrionPortingExtension {
     public void porting(String... values) {
         portingBranches.addAll(Arrays.stream(values).collect(Collectors.toList()));
     }
+
+    public void diffIgnore(String... values) {
+        diffIgnore.addAll(Arrays.stream(values).collect(Collectors.toList()));
+    }
+
+    public void diffEngine(String branch, String engine) {
+        branchDiffEngines.put(branch, engine);
+    }
+
+    public File getPatchesDir() {
+        return new File(project.getRootDir(), "patches");
+    }
+
+    public File getCommitFile() {
+        return new File(project.getRootDir(), "commit.sha");
+    }
+
+    public File getUpstreamDir() {
+        return scratchDir.dir("upstream").get().getAsFile();
+    }
+
+    public File getWorkspaceDir() {
+        return scratchDir.dir("workspace").get().getAsFile();
+    }
+
+    public File getWorkspaceDir(String branch) {
+        return new File(getWorkspaceDir(), branch);
+    }
+
+    public File getRejectsDir() {
+        return scratchDir.dir("rejects").get().getAsFile();
+    }
+
+    public File getTmpDir() {
+        return scratchDir.dir("tmp").get().getAsFile();
+    }
 }
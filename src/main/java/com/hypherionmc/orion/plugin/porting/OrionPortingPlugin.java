@@ -7,14 +7,34 @@
 package com.hypherionmc.orion.plugin.porting;
 
 import com.hypherionmc.orion.Constants;
+import com.hypherionmc.orion.task.patches.BenchmarkDiffEngines;
+import com.hypherionmc.orion.task.patches.BenchmarkFileIO;
+import com.hypherionmc.orion.task.patches.CheckPatches;
 import com.hypherionmc.orion.task.patches.GeneratePatches;
+import com.hypherionmc.orion.task.patches.PackPatches;
 import com.hypherionmc.orion.task.patches.RebuildPatches;
+import com.hypherionmc.orion.task.patches.UnpackPatches;
+import com.hypherionmc.orion.task.patches.WatchPatches;
+import com.hypherionmc.orion.task.workspace.CheckoutUpstream;
 import com.hypherionmc.orion.task.workspace.CleanWorkspace;
+import com.hypherionmc.orion.task.workspace.PortRange;
+import com.hypherionmc.orion.task.workspace.ReapplyRejects;
 import com.hypherionmc.orion.task.workspace.SetupWorkspace;
 import com.hypherionmc.orion.task.workspace.SplitSources;
 import com.hypherionmc.orion.task.workspace.UpdateCommitSha;
+import com.hypherionmc.orion.utils.DiffIgnore;
+import com.hypherionmc.orion.utils.FingerprintService;
+import com.hypherionmc.orion.utils.GitRepositoryService;
+import com.hypherionmc.orion.utils.PatchBundle;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.file.FileTree;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskProvider;
+
+import java.io.File;
+import java.util.Arrays;
 
 /**
  * @author HypherionSA
@@ -25,16 +45,128 @@ public class OrionPortingPlugin implements Plugin<Project> {
     @Override
     public void apply(Project target) {
         // Register the porting extension and tasks
-        target.getRootProject().getExtensions().create("orionporting", OrionPortingExtension.class, target.getRootProject());
+        OrionPortingExtension extension = target.getRootProject().getExtensions().create("orionporting", OrionPortingExtension.class, target.getRootProject());
+        Provider<GitRepositoryService> gitService = GitRepositoryService.register(target.getRootProject());
+        Provider<FingerprintService> fingerprints = FingerprintService.register(target.getRootProject());
 
         // Configure tasks
-        target.getRootProject().getTasks().register("setupWorkspace", SetupWorkspace.class).configure(c -> c.setGroup(Constants.TASK_GROUP));
+        target.getRootProject().getTasks().register("checkoutUpstream", CheckoutUpstream.class).configure(c -> c.setGroup(Constants.TASK_GROUP));
+        target.getRootProject().getTasks().register("setupWorkspace").configure(c -> c.setGroup(Constants.TASK_GROUP));
         target.getRootProject().getTasks().register("cleanWorkspace", CleanWorkspace.class).configure(c -> c.setGroup(Constants.TASK_GROUP));
         target.getRootProject().getTasks().register("updateCommitRef", UpdateCommitSha.class).configure(c -> c.setGroup(Constants.TASK_GROUP));
-        target.getRootProject().getTasks().register("splitSources", SplitSources.class).configure(c -> c.setGroup(Constants.TASK_GROUP));
+        target.getRootProject().getTasks().register("splitSources").configure(c -> c.setGroup(Constants.TASK_GROUP));
+        target.getRootProject().getTasks().register("portRange", PortRange.class).configure(c -> c.setGroup(Constants.TASK_GROUP));
+        target.getRootProject().getTasks().register("reapplyRejects", ReapplyRejects.class).configure(c -> c.setGroup(Constants.TASK_GROUP));
 
         // Patching Tasks
-        target.getRootProject().getTasks().register("generatePatches", GeneratePatches.class).configure(c -> c.setGroup(Constants.PATCH_GROUP));
+        target.getRootProject().getTasks().register("generatePatches").configure(c -> c.setGroup(Constants.PATCH_GROUP));
         target.getRootProject().getTasks().register("rebuildPatches", RebuildPatches.class).configure(c -> c.setGroup(Constants.PATCH_GROUP));
+        target.getRootProject().getTasks().register("watchPatches", WatchPatches.class).configure(c -> {
+            c.setGroup(Constants.PATCH_GROUP);
+            c.usesService(fingerprints);
+        });
+        target.getRootProject().getTasks().register("packPatches", PackPatches.class).configure(c -> c.setGroup(Constants.PATCH_GROUP));
+        target.getRootProject().getTasks().register("unpackPatches", UnpackPatches.class).configure(c -> c.setGroup(Constants.PATCH_GROUP));
+        target.getRootProject().getTasks().register("checkPatches", CheckPatches.class).configure(c -> {
+            c.setGroup(Constants.PATCH_GROUP);
+            c.getReport().set(target.getRootProject().getLayout().getBuildDirectory().file("reports/orion/checkPatches.txt"));
+            c.getOutputs().upToDateWhen(t -> false);
+        });
+        target.getRootProject().getTasks().register("benchmarkDiffEngines", BenchmarkDiffEngines.class).configure(c -> {
+            c.setGroup(Constants.PATCH_GROUP);
+            c.getOutputDir().set(target.getRootProject().getLayout().getBuildDirectory().dir("tmp/orion/diffEngines"));
+            c.getReport().set(target.getRootProject().getLayout().getBuildDirectory().file("reports/orion/diffEngines.csv"));
+            c.getOutputs().upToDateWhen(t -> false);
+        });
+        target.getRootProject().getTasks().register("benchmarkFileIO", BenchmarkFileIO.class).configure(c -> {
+            c.setGroup(Constants.PATCH_GROUP);
+            c.getOutputDir().set(target.getRootProject().getLayout().getBuildDirectory().dir("tmp/orion/fileIO"));
+            c.getReport().set(target.getRootProject().getLayout().getBuildDirectory().file("reports/orion/fileIO.csv"));
+            c.getOutputs().upToDateWhen(t -> false);
+        });
+
+        // Tasks that read from the git repository
+        for (String name : Arrays.asList("checkoutUpstream", "updateCommitRef", "portRange", "rebuildPatches", "watchPatches", "checkPatches")) {
+            target.getRootProject().getTasks().named(name).configure(c -> c.usesService(gitService));
+        }
+
+        // Per branch tasks can only be registered once the porting branches are configured
+        target.getRootProject().afterEvaluate(p -> {
+            for (String b : extension.getPortingBranches().get()) {
+                registerBranchTasks(p, extension, b, gitService, fingerprints);
+            }
+        });
+    }
+
+    /**
+     * Register the setup, patch generation and split tasks for a single porting branch, and hook them into the aggregate tasks
+     * @param project The root project
+     * @param extension The porting extension
+     * @param branch The porting branch
+     * @param gitService The shared git repositories
+     * @param fingerprints The shared fingerprint cache
+     */
+    private void registerBranchTasks(Project project, OrionPortingExtension extension, String branch, Provider<GitRepositoryService> gitService, Provider<FingerprintService> fingerprints) {
+        String suffix = taskSuffix(branch);
+
+        TaskProvider<SetupWorkspace> setup = project.getTasks().register("setupWorkspace" + suffix, SetupWorkspace.class, c -> {
+            c.setGroup(Constants.TASK_GROUP);
+            c.getBranch().set(branch);
+            c.dependsOn("checkoutUpstream");
+            c.onlyIf("The workspace was set up by checkoutUpstream", t -> !extension.getPipelinedSetup().get());
+        });
+
+        TaskProvider<GeneratePatches> generate = project.getTasks().register("generatePatches" + suffix, GeneratePatches.class, c -> {
+            c.setGroup(Constants.PATCH_GROUP);
+            c.getBranch().set(branch);
+            c.mustRunAfter(setup);
+            c.getGitService().set(gitService);
+            c.usesService(gitService);
+
+            // Only the files that are diffed are inputs. Ignored paths and empty directories never change the patches
+            DiffIgnore ignore = DiffIgnore.of(extension);
+            c.getInputs().files(diffedFiles(project, extension.getUpstreamDir(), ignore)).withPropertyName("upstream").withPathSensitivity(PathSensitivity.RELATIVE).ignoreEmptyDirectories();
+            c.getInputs().files(diffedFiles(project, extension.getWorkspaceDir(branch), ignore)).withPropertyName("workspace").withPathSensitivity(PathSensitivity.RELATIVE).ignoreEmptyDirectories();
+
+            if (extension.getBundlePatches().get()) {
+                c.getOutputs().file(PatchBundle.INSTANCE.getBundle(extension.getPatchesDir(), branch));
+            } else {
+                c.getOutputs().dir(new File(extension.getPatchesDir(), branch));
+            }
+        });
+
+        TaskProvider<SplitSources> split = project.getTasks().register("splitSources" + suffix, SplitSources.class, c -> {
+            c.setGroup(Constants.TASK_GROUP);
+            c.getBranch().set(branch);
+            c.mustRunAfter(setup, generate);
+            c.usesService(fingerprints);
+        });
+
+        project.getTasks().named("setupWorkspace").configure(c -> c.dependsOn(setup));
+        project.getTasks().named("generatePatches").configure(c -> c.dependsOn(generate));
+        project.getTasks().named("splitSources").configure(c -> c.dependsOn(split));
+    }
+
+    /**
+     * The files of a directory that are diffed when generating patches. Ignored directories are pruned, not walked
+     */
+    private FileTree diffedFiles(Project project, File dir, DiffIgnore ignore) {
+        return project.fileTree(dir).matching(f -> f.exclude(e -> ignore.isIgnored(dir.toPath(), e.getRelativePath().getPathString(), e.isDirectory())));
+    }
+
+    /**
+     * Convert a branch name into a task name suffix. For example, neoforge-1.21 becomes Neoforge121
+     */
+    private String taskSuffix(String branch) {
+        StringBuilder builder = new StringBuilder();
+
+        for (String part : branch.split("[^A-Za-z0-9]+")) {
+            if (part.isEmpty())
+                continue;
+
+            builder.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+        }
+
+        return builder.toString();
     }
 }
@@ -6,39 +6,131 @@
  */
 package com.hypherionmc.orion.task;
 
-import com.hypherionmc.orion.Constants;
 import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import com.hypherionmc.orion.task.patches.GeneratePatchesAction;
+import com.hypherionmc.orion.task.workspace.ApplyPatchesAction;
+import com.hypherionmc.orion.utils.DiffIgnore;
+import com.hypherionmc.orion.utils.DirectorySync;
+import com.hypherionmc.orion.utils.FileIO;
+import com.hypherionmc.orion.utils.FingerprintService;
+import com.hypherionmc.orion.utils.GitRepositoryService;
+import com.hypherionmc.orion.utils.PatchChecker;
+import com.hypherionmc.orion.utils.PatchBundle;
+import com.hypherionmc.orion.utils.PatchSettings;
+import com.hypherionmc.orion.utils.PatchWatcher;
 import com.hypherionmc.orion.utils.Patcher;
+import com.hypherionmc.orion.utils.ProgressReporter;
+import com.hypherionmc.orion.utils.TrashCan;
+import com.hypherionmc.orion.utils.diff.DiffEngine;
+import com.hypherionmc.orion.utils.diff.DiffEngines;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
+import org.gradle.api.provider.Provider;
+import org.gradle.workers.WorkerExecutor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 @NoArgsConstructor(access = AccessLevel.PACKAGE)
 public class TaskActions {
 
     public static TaskActions INSTANCE = new TaskActions();
 
-    public void cleanWorkspace(Logger logger, Project project) {
-        project.delete(Constants.patcherWorkdir, Constants.patcherUpstream, new File(project.getRootProject().getRootDir(), "tmp"));
+    public void cleanWorkspace(Logger logger, Project project, OrionPortingExtension extension) {
+        deleteDirectories(project, logger, extension.getWorkspaceDir(), extension.getUpstreamDir(), extension.getTmpDir());
         logger.lifecycle("Cleaned up working directories");
     }
 
-    public void generatePatches(Project project, Logger logger, OrionPortingExtension extension) throws Exception {
-        logger.lifecycle("Generating Patches");
+    /**
+     * Delete working directories. When async cleanup is enabled, the directories are moved
+     * into the trash and deleted in the background
+     * @param project The project the plugin is applied to
+     * @param logger The logger to report to
+     * @param dirs The directories to delete
+     */
+    public void deleteDirectories(Project project, Logger logger, File... dirs) {
+        OrionPortingExtension extension = project.getExtensions().findByType(OrionPortingExtension.class);
+
+        if (extension == null || !extension.getAsyncCleanup().get()) {
+            project.delete((Object[]) dirs);
+            return;
+        }
+
+        for (File dir : dirs) {
+            TrashCan.INSTANCE.trash(logger, dir);
+        }
+    }
+
+    public void generatePatches(WorkerExecutor workers, Logger logger, OrionPortingExtension extension, String branch, Provider<GitRepositoryService> gitService) {
+        logger.lifecycle("Generating Patches for {}", branch);
+
+        // The settings are resolved here, so the worker never touches the project
+        workers.noIsolation().submit(GeneratePatchesAction.class, p -> {
+            p.getSettings().set(PatchSettings.of(extension, branch));
+            p.getGitService().set(gitService);
+        });
+    }
+
+    public void watchPatches(Project project, Logger logger, OrionPortingExtension extension) throws Exception {
+        if (!extension.getUpstreamDir().exists() || !extension.getWorkspaceDir().exists())
+            throw new GradleException("Working Directory does NOT exist. Run setupWorkspace first");
+
+        try (PatchWatcher watcher = new PatchWatcher(project, extension)) {
+            watcher.watch();
+        }
+    }
+
+    public void packPatches(Project project, Logger logger, OrionPortingExtension extension) throws IOException {
+        File patchesDir = extension.getPatchesDir();
+
+        for (String b : extension.getPortingBranches().get()) {
+            File tree = new File(patchesDir, b);
+            if (!tree.isDirectory())
+                continue;
+
+            int count = PatchBundle.INSTANCE.pack(tree, PatchBundle.INSTANCE.getBundle(patchesDir, b));
+            FileUtils.deleteDirectory(tree);
+            logger.lifecycle("Packed {} patches for {}", count, b);
+        }
+    }
+
+    public void unpackPatches(Project project, Logger logger, OrionPortingExtension extension) throws IOException {
+        File patchesDir = extension.getPatchesDir();
+
         for (String b : extension.getPortingBranches().get()) {
-            Patcher.INSTANCE.generatePatches(project, b);
+            File bundle = PatchBundle.INSTANCE.getBundle(patchesDir, b);
+            if (!bundle.isFile())
+                continue;
+
+            File tree = new File(patchesDir, b);
+            FileUtils.deleteDirectory(tree);
+            int count = PatchBundle.INSTANCE.unpack(bundle, tree);
+            FileUtils.delete(bundle);
+            logger.lifecycle("Unpacked {} patches for {}", count, b);
         }
     }
 
-    public void setupWorkspace(Project project, Logger logger, OrionPortingExtension extension) throws Exception {
+    public void checkoutUpstream(Project project, Logger logger, OrionPortingExtension extension) throws Exception {
         if (!extension.getUpstreamBranch().isPresent() || extension.getUpstreamBranch().get().equalsIgnoreCase("INVALID")) {
             throw new GradleException("No upstream branch specified.");
         }
@@ -46,30 +138,234 @@ public class TaskActions {
         if (extension.getPortingBranches().get().isEmpty())
             throw new GradleException("No porting branches specified");
 
-        // Clean the working directories
-        project.delete(Constants.patcherUpstream);
-        project.delete(Constants.patcherWorkdir);
+        // Clean the upstream directory, and the working directories when they are set up during the checkout
+        deleteDirectories(project, logger, extension.getUpstreamDir());
+        if (extension.getPipelinedSetup().get()) {
+            for (String b : extension.getPortingBranches().get()) {
+                deleteDirectories(project, logger, extension.getWorkspaceDir(b));
+            }
+        }
 
         // Check if current branch already has an upstream commit linked to it, and pull that instead
         String lastCommitId = null;
-        if (Constants.patcherCommit.exists()) {
-            lastCommitId = FileUtils.readFileToString(Constants.patcherCommit, StandardCharsets.UTF_8);
+        if (extension.getCommitFile().exists()) {
+            lastCommitId = FileUtils.readFileToString(extension.getCommitFile(), StandardCharsets.UTF_8);
         }
 
-        Patcher.INSTANCE.checkoutUpstreamBranch(project, extension.getUpstreamBranch().get(), extension, lastCommitId, true);
+        Patcher.INSTANCE.checkoutUpstreamBranch(project, extension.getUpstreamBranch().get(), extension, lastCommitId, extension.getPipelinedSetup().get());
     }
 
-    public void splitSources(Project project, Logger logger, OrionPortingExtension extension) throws IOException {
-        if (!Files.exists(Constants.patcherWorkdir))
+    public void setupWorkspace(Project project, WorkerExecutor workers, Logger logger, OrionPortingExtension extension, String branch) {
+        if (!extension.getUpstreamDir().exists())
+            throw new GradleException("Upstream Directory does NOT exist");
+
+        // Clean the working directory of the branch
+        deleteDirectories(project, logger, extension.getWorkspaceDir(branch));
+
+        workers.noIsolation().submit(ApplyPatchesAction.class, p -> p.getSettings().set(PatchSettings.of(extension, branch)));
+    }
+
+    public void reapplyRejects(Project project, Logger logger, OrionPortingExtension extension) throws Exception {
+        if (!extension.getUpstreamDir().exists() || !extension.getWorkspaceDir().exists())
+            throw new GradleException("Working Directory does NOT exist. Run setupWorkspace first");
+
+        int remaining = 0;
+        for (String b : extension.getPortingBranches().get()) {
+            if (extension.getWorkspaceDir(b).exists())
+                remaining += Patcher.INSTANCE.reapplyRejects(project, b, extension);
+        }
+
+        if (remaining != 0)
+            throw new GradleException(remaining + " patches still have rejects. Fix them and run reapplyRejects again");
+
+        logger.lifecycle("All rejected patches applied successfully");
+    }
+
+    public void portRange(Project project, Logger logger, OrionPortingExtension extension) throws Exception {
+        if (!extension.getUpstreamBranch().isPresent() || extension.getUpstreamBranch().get().equalsIgnoreCase("INVALID")) {
+            throw new GradleException("No upstream branch specified.");
+        }
+
+        if (!extension.getCommitFile().exists())
+            throw new GradleException("No commit ref found. Run setupWorkspace first");
+
+        if (!extension.getUpstreamDir().exists() || !extension.getWorkspaceDir().exists())
+            throw new GradleException("Working Directory does NOT exist. Run setupWorkspace first");
+
+        Patcher.INSTANCE.portRange(project, extension);
+    }
+
+    public void splitSources(Project project, Logger logger, OrionPortingExtension extension, String branch) throws IOException {
+        if (!extension.getWorkspaceDir(branch).exists())
             throw new GradleException("Working Directory does NOT exist");
 
+        File f = new File(project.getRootProject().getRootDir(), branch);
+
+        DirectorySync.Result result = DirectorySync.INSTANCE.sync(extension.getWorkspaceDir(branch).toPath(), f.toPath(), FingerprintService.register(project).get(), DiffIgnore.of(extension));
+        logger.lifecycle("Synced {}: {} copied, {} deleted, {} unchanged", branch, result.getCopied(), result.getDeleted(), result.getSkipped());
+    }
+
+    public void rebuildPatches(Project project, Logger logger, OrionPortingExtension extension) throws Exception {
+        if (!extension.getUpstreamBranch().isPresent() || extension.getUpstreamBranch().get().equalsIgnoreCase("INVALID")) {
+            throw new GradleException("No upstream branch specified.");
+        }
+
+        // Resolve the upstream commit and check it out once, without applying patches
+        Patcher.INSTANCE.checkoutUpstreamBranch(project, extension.getUpstreamBranch().get(), extension, null, false);
+
+        // Diff the branch directories in place, instead of copying them into the workspace
+        logger.lifecycle("Generating Patches");
+        for (String b : extension.getPortingBranches().get()) {
+            Patcher.INSTANCE.generatePatches(project, b, new File(project.getRootProject().getRootDir(), b), extension);
+        }
+    }
+
+    public void checkPatches(Project project, Logger logger, OrionPortingExtension extension, File report) throws IOException {
+        if (extension.getPortingBranches().get().isEmpty())
+            throw new GradleException("No porting branches specified");
+
+        if (!extension.getCommitFile().exists())
+            throw new GradleException("No commit ref found. Run updateCommitRef first");
+
+        String commitId = FileUtils.readFileToString(extension.getCommitFile(), StandardCharsets.UTF_8).trim();
+        Map<String, Map<String, List<String>>> rejects = new PatchChecker(project, extension).check(commitId);
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("Checked patches against ").append(commitId).append('\n');
+        rejects.forEach((b, files) -> files.forEach((file, hunks) -> {
+            builder.append('\n').append(b).append('/').append(file).append(": ").append(hunks.size()).append(" rejected hunks\n");
+            hunks.forEach(h -> builder.append(h).append('\n'));
+        }));
+
+        FileUtils.writeStringToFile(report, builder.toString(), StandardCharsets.UTF_8);
+
+        if (!rejects.isEmpty()) {
+            StringBuilder message = new StringBuilder("Patches do not apply cleanly to ").append(commitId).append(":");
+            rejects.forEach((b, files) -> files.forEach((file, hunks) ->
+                    message.append("\n  ").append(b).append('/').append(file).append(" (").append(hunks.size()).append(" rejected hunks)")));
+            message.append("\nSee ").append(report.getAbsolutePath());
+            throw new GradleException(message.toString());
+        }
+
+        logger.lifecycle("All patches apply cleanly to {}", commitId);
+    }
+
+    public void benchmarkDiffEngines(Project project, Logger logger, OrionPortingExtension extension, File outputDir, File report) throws Exception {
+        if (!extension.getUpstreamDir().exists() || !extension.getWorkspaceDir().exists())
+            throw new GradleException("Working Directory does NOT exist. Run setupWorkspace first");
+
+        StringBuilder builder = new StringBuilder("branch,engine,millis,patches,bytes\n");
+
         for (String b : extension.getPortingBranches().get()) {
-            File f = new File(project.getRootProject().getRootDir(), b);
-            if (f.exists())
-                FileUtils.deleteQuietly(f);
+            Set<String> ignored = new TreeSet<>(DiffIgnore.of(extension).collectIgnored(extension.getUpstreamDir().toPath()));
+            ignored.addAll(DiffIgnore.of(extension).collectIgnored(extension.getWorkspaceDir(b).toPath()));
+
+            for (DiffEngine engine : DiffEngines.INSTANCE.getEngines()) {
+                File output = new File(outputDir, engine.getName() + File.separator + b);
+                FileUtils.deleteDirectory(output);
+
+                long start = System.nanoTime();
+                try (ProgressReporter progress = ProgressReporter.start(project, "Diffing " + b + " with " + engine.getName(), "files", 0)) {
+                    engine.diffTree(logger, progress, extension.getUpstreamDir().toPath(), extension.getWorkspaceDir(b).toPath(), ignored, output, false);
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000L;
+
+                Collection<File> patches = output.isDirectory() ? FileUtils.listFiles(output, null, true) : Collections.emptyList();
+                long bytes = patches.stream().mapToLong(File::length).sum();
 
-            FileUtils.copyDirectory(Constants.patcherWorkdir.resolve(b).toFile(), f);
+                logger.lifecycle("{} with {}: {} ms, {} patches, {} bytes", b, engine.getName(), millis, patches.size(), bytes);
+                builder.append(b).append(',').append(engine.getName()).append(',').append(millis).append(',').append(patches.size()).append(',').append(bytes).append('\n');
+            }
         }
+
+        FileUtils.writeStringToFile(report, builder.toString(), StandardCharsets.UTF_8);
+        logger.lifecycle("Wrote diff engine comparison to {}", report);
+    }
+
+    public void benchmarkFileIO(Logger logger, OrionPortingExtension extension, File outputDir, File report) throws Exception {
+        if (!extension.getUpstreamDir().exists() || !extension.getWorkspaceDir().exists())
+            throw new GradleException("Working Directory does NOT exist. Run setupWorkspace first");
+
+        StringBuilder builder = new StringBuilder("branch,operation,method,files,millis,cpuMillis,allocatedKb,gcMillis\n");
+        Path upstream = extension.getUpstreamDir().toPath();
+
+        for (String b : extension.getPortingBranches().get()) {
+            Path workspace = extension.getWorkspaceDir(b).toPath();
+            Set<String> ignored = new TreeSet<>(DiffIgnore.of(extension).collectIgnored(upstream));
+            ignored.addAll(DiffIgnore.of(extension).collectIgnored(workspace));
+
+            Set<String> files = DiffIgnore.listFiles(workspace, ignored);
+            Set<String> shared = new TreeSet<>(files);
+            shared.retainAll(DiffIgnore.listFiles(upstream, ignored));
+
+            // The stream based methods are what the porting code used before FileIO
+            Map<String, IOAction> methods = new LinkedHashMap<>();
+            methods.put("compare,heap", p -> Arrays.equals(Files.readAllBytes(upstream.resolve(p)), Files.readAllBytes(workspace.resolve(p))));
+            methods.put("compare,channel", p -> FileIO.INSTANCE.contentEquals(upstream.resolve(p), workspace.resolve(p)));
+            methods.put("copy,heap", p -> {
+                Path to = outputDir.toPath().resolve("heap").resolve(b).resolve(p);
+                Files.createDirectories(to.getParent());
+                try (InputStream in = Files.newInputStream(workspace.resolve(p)); OutputStream out = Files.newOutputStream(to)) {
+                    IOUtils.copy(in, out);
+                }
+            });
+            methods.put("copy,channel", p -> FileIO.INSTANCE.copy(workspace.resolve(p), outputDir.toPath().resolve("channel").resolve(b).resolve(p), false));
+
+            // Read everything once, so the first method does not pay for a cold page cache
+            measure(shared, methods.get("compare,channel"));
+            measure(files, p -> FileIO.INSTANCE.contentEquals(workspace.resolve(p), workspace.resolve(p)));
+
+            FileUtils.deleteDirectory(outputDir);
+            for (Map.Entry<String, IOAction> method : methods.entrySet()) {
+                Set<String> paths = method.getKey().startsWith("compare") ? shared : files;
+                long[] result = measure(paths, method.getValue());
+
+                logger.lifecycle("{} {}: {} files, {} ms, {} ms cpu, {} KB allocated, {} ms gc", b, method.getKey().replace(',', ' '), paths.size(), result[0], result[1], result[2], result[3]);
+                builder.append(b).append(',').append(method.getKey()).append(',').append(paths.size());
+                for (long value : result) {
+                    builder.append(',').append(value);
+                }
+                builder.append('\n');
+            }
+            FileUtils.deleteDirectory(outputDir);
+        }
+
+        FileUtils.writeStringToFile(report, builder.toString(), StandardCharsets.UTF_8);
+        logger.lifecycle("Wrote file IO comparison to {}", report);
+    }
+
+    /**
+     * Run an action for every path on the current thread, so its CPU time and allocations can be read from the thread
+     * @return Wall time, CPU time, allocated kilobytes, and GC time of the whole build, or -1 where the JVM can't tell
+     */
+    private static long[] measure(Set<String> paths, IOAction action) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threads : null;
+        long thread = Thread.currentThread().getId();
+
+        long cpu = threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+        long allocated = allocations != null ? allocations.getThreadAllocatedBytes(thread) : -1;
+        long gc = gcMillis();
+        long start = System.nanoTime();
+
+        for (String path : paths) {
+            action.run(path);
+        }
+
+        return new long[] {
+                (System.nanoTime() - start) / 1_000_000L,
+                cpu < 0 ? -1 : (threads.getCurrentThreadCpuTime() - cpu) / 1_000_000L,
+                allocated < 0 ? -1 : (allocations.getThreadAllocatedBytes(thread) - allocated) / 1024L,
+                gcMillis() - gc
+        };
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(g -> Math.max(0, g.getCollectionTime())).sum();
+    }
+
+    private interface IOAction {
+        void run(String path) throws IOException;
     }
 
     public void updateCommitSha(Project project, Logger logger, OrionPortingExtension extension) {
@@ -1,12 +1,20 @@
 package com.hypherionmc.orion.task.paper;
 
-import com.hypherionmc.orion.plugin.paper.OrigamiExtension;
+import com.hypherionmc.orion.utils.FileIO;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
-import org.gradle.api.Project;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
-import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.work.NormalizeLineEndings;
 
 import java.io.File;
 import java.io.IOException;
@@ -16,43 +24,61 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Prepares the common sources for plugin projects. Registered once on the common project, and shared by all
+ * Origami projects using it. The output only depends on the relative paths and contents of the sources,
+ * and the exclusions, so it can be restored from the build cache
+ */
+@CacheableTask
 public class BeforeCompileTask extends DefaultTask {
 
-    @TaskAction
-    public void prepareSourcesTask() throws IOException {
-        OrigamiExtension extension = getProject().getExtensions().findByType(OrigamiExtension.class);
+    private final DirectoryProperty sourcesFolder = getProject().getObjects().directoryProperty();
+    private final ListProperty<String> excludedPackages = getProject().getObjects().listProperty(String.class);
+    private final ListProperty<String> excludedResources = getProject().getObjects().listProperty(String.class);
+    private final DirectoryProperty destFolder = getProject().getObjects().directoryProperty();
+
+    @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
+    @IgnoreEmptyDirectories
+    @NormalizeLineEndings
+    public DirectoryProperty getSourcesFolder() {
+        return sourcesFolder;
+    }
 
-        if (extension == null)
-            throw new GradleException("Cannot find origami extension on project");
+    @Input
+    public ListProperty<String> getExcludedPackages() {
+        return excludedPackages;
+    }
 
-        Project common = getProject().getRootProject().findProject(extension.getCommonProject().get());
+    @Input
+    public ListProperty<String> getExcludedResources() {
+        return excludedResources;
+    }
 
-        if (common == null) {
-            getProject().getLogger().warn("Cannot find Common Project {}", extension.getCommonProject().get());
-            return;
-        }
+    @OutputDirectory
+    public DirectoryProperty getDestFolder() {
+        return destFolder;
+    }
 
-        File sourcesFolder = new File(common.getProjectDir(), "src/main");
-        if (!sourcesFolder.exists()) {
-            getProject().getLogger().warn("Cannot find Sources folder in {}", extension.getCommonProject().get());
-            return;
-        }
+    @TaskAction
+    public void prepareSourcesTask() throws IOException {
+        File sourcesFolder = getSourcesFolder().get().getAsFile();
+        File destFolder = getDestFolder().get().getAsFile();
 
-        File destFolder = new File(getProject().getBuildDir(), "commonShared");
         if (destFolder.exists()) {
             FileUtils.deleteDirectory(destFolder);
         }
         destFolder.mkdirs();
 
-        FileUtils.copyDirectory(sourcesFolder, destFolder);
+        FileIO.INSTANCE.copyDirectory(sourcesFolder.toPath(), destFolder.toPath());
 
-        for (String excludedPackage : extension.getExcludedPackages().get()) {
+        for (String excludedPackage : getExcludedPackages().get()) {
             File pkg = new File(destFolder, "java/" + excludedPackage.replace(".", "/"));
             if (pkg.exists())
                 FileUtils.deleteDirectory(pkg);
         }
 
-        for (String excludedResource : extension.getExcludedResources().get()) {
+        for (String excludedResource : getExcludedResources().get()) {
             File pkg = new File(destFolder, "resources/" + excludedResource);
             if (pkg.exists()) {
                 if (pkg.isDirectory()) {
@@ -64,8 +90,6 @@ public class BeforeCompileTask extends DefaultTask {
         }
 
         processComments(destFolder);
-
-        getProject().getTasks().withType(JavaCompile.class).forEach(t -> t.source(new File(destFolder, "java")));
     }
 
     private void processComments(File sourceDir) {
@@ -101,7 +125,9 @@ public class BeforeCompileTask extends DefaultTask {
             String updatedContent = matcher.replaceAll("\n");
             updatedContent = updatedContent.replaceAll("(?m)^[ \t]*\n{2,}", "\n");
 
-            FileUtils.write(file, updatedContent, StandardCharsets.UTF_8);
+            // Most files have nothing to strip, and don't need to be written again
+            if (!updatedContent.equals(content))
+                FileUtils.write(file, updatedContent, StandardCharsets.UTF_8);
         } catch (IOException e) {
             throw new GradleException(e.getMessage());
         }
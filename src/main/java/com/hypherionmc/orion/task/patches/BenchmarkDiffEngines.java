@@ -0,0 +1,48 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.task.patches;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import com.hypherionmc.orion.task.TaskActions;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * @author HypherionSA
+ * Task to compare the diff time and patch size of every registered diff engine, on the current workspaces
+ */
+public class BenchmarkDiffEngines extends DefaultTask {
+
+    private final DirectoryProperty outputDir = getProject().getObjects().directoryProperty();
+    private final RegularFileProperty report = getProject().getObjects().fileProperty();
+
+    @OutputDirectory
+    public DirectoryProperty getOutputDir() {
+        return outputDir;
+    }
+
+    @OutputFile
+    public RegularFileProperty getReport() {
+        return report;
+    }
+
+    @TaskAction
+    public void benchmarkDiffEngines() throws Exception {
+        OrionPortingExtension extension = getProject().getExtensions().findByType(OrionPortingExtension.class);
+
+        if (extension == null)
+            throw new GradleException("Cannot find orionporting extension on project");
+
+        TaskActions.INSTANCE.benchmarkDiffEngines(getProject(), getLogger(), extension, outputDir.get().getAsFile(), report.get().getAsFile());
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.task.patches;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import com.hypherionmc.orion.task.TaskActions;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.IOException;
+
+/**
+ * @author HypherionSA
+ * Task to verify that the patches of all branches still apply to the linked upstream commit,
+ * without writing the upstream sources or workspaces to disk
+ */
+public class CheckPatches extends DefaultTask {
+
+    private final RegularFileProperty report = getProject().getObjects().fileProperty();
+
+    @OutputFile
+    public RegularFileProperty getReport() {
+        return report;
+    }
+
+    @TaskAction
+    public void checkPatches() throws IOException {
+        OrionPortingExtension extension = getProject().getExtensions().findByType(OrionPortingExtension.class);
+
+        if (extension == null)
+            throw new GradleException("Cannot find orionporting extension on project");
+
+        TaskActions.INSTANCE.checkPatches(getProject(), getLogger(), extension, report.get().getAsFile());
+    }
+
+}
@@ -8,24 +8,48 @@ package com.hypherionmc.orion.task.patches;
 
 import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
 import com.hypherionmc.orion.task.TaskActions;
+import com.hypherionmc.orion.utils.GitRepositoryService;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
 
 /**
  * @author HypherionSA
- * Task to generate patches between the upstream branch and working directory
+ * Task to generate patches between the upstream branch and the working directory of a single porting branch.
+ * The diff runs in a worker, so the tasks of other branches can run at the same time
  */
-public class GeneratePatches extends DefaultTask {
+public abstract class GeneratePatches extends DefaultTask {
+
+    private final Property<String> branch = getProject().getObjects().property(String.class);
+    private final Property<GitRepositoryService> gitService = getProject().getObjects().property(GitRepositoryService.class);
+
+    @Input
+    public Property<String> getBranch() {
+        return branch;
+    }
+
+    @Internal
+    public Property<GitRepositoryService> getGitService() {
+        return gitService;
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
 
     @TaskAction
-    public void generatePatches() throws Exception {
+    public void generatePatches() {
         OrionPortingExtension extension = getProject().getExtensions().findByType(OrionPortingExtension.class);
 
         if (extension == null)
             throw new GradleException("Cannot find orionporting extension on project");
 
-        TaskActions.INSTANCE.generatePatches(getProject(), getLogger(), extension);
+        TaskActions.INSTANCE.generatePatches(getWorkerExecutor(), getLogger(), extension, branch.get(), gitService);
     }
 
 }
@@ -0,0 +1,41 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.task.patches;
+
+import com.hypherionmc.orion.utils.GitRepositoryService;
+import com.hypherionmc.orion.utils.PatchSettings;
+import com.hypherionmc.orion.utils.Patcher;
+import org.eclipse.jgit.lib.Repository;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * @author HypherionSA
+ * Generates the patches of a single porting branch in a Gradle worker, so all branches are diffed concurrently
+ */
+public abstract class GeneratePatchesAction implements WorkAction<GeneratePatchesAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+        Property<PatchSettings> getSettings();
+        Property<GitRepositoryService> getGitService();
+    }
+
+    @Override
+    public void execute() {
+        PatchSettings settings = getParameters().getSettings().get();
+        Repository repository = settings.isDetectRenames() ? getParameters().getGitService().get().getRepository(settings.getRootDir()) : null;
+
+        try {
+            Patcher.INSTANCE.generatePatches(Logging.getLogger(GeneratePatchesAction.class), null, repository, settings, settings.getWorkspaceDir());
+        } catch (Exception e) {
+            throw new GradleException("Failed to generate patches for " + settings.getBranch(), e);
+        }
+    }
+}
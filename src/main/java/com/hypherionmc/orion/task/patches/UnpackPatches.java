@@ -0,0 +1,33 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.task.patches;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import com.hypherionmc.orion.task.TaskActions;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.IOException;
+
+/**
+ * @author HypherionSA
+ * Task to convert patch bundles back into readable patches trees, for reviews
+ */
+public class UnpackPatches extends DefaultTask {
+
+    @TaskAction
+    public void unpackPatches() throws IOException {
+        OrionPortingExtension extension = getProject().getExtensions().findByType(OrionPortingExtension.class);
+
+        if (extension == null)
+            throw new GradleException("Cannot find orionporting extension on project");
+
+        TaskActions.INSTANCE.unpackPatches(getProject(), getLogger(), extension);
+    }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.task.patches;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import com.hypherionmc.orion.task.TaskActions;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * @author HypherionSA
+ * Long-running task that regenerates patches for files as they are changed in the working directory
+ */
+public class WatchPatches extends DefaultTask {
+
+    @TaskAction
+    public void watchPatches() throws Exception {
+        OrionPortingExtension extension = getProject().getExtensions().findByType(OrionPortingExtension.class);
+
+        if (extension == null)
+            throw new GradleException("Cannot find orionporting extension on project");
+
+        TaskActions.INSTANCE.watchPatches(getProject(), getLogger(), extension);
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.task.workspace;
+
+import com.hypherionmc.orion.utils.PatchSettings;
+import com.hypherionmc.orion.utils.Patcher;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * @author HypherionSA
+ * Applies the patches of a single porting branch in a Gradle worker, so all branches are set up concurrently
+ */
+public abstract class ApplyPatchesAction implements WorkAction<ApplyPatchesAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+        Property<PatchSettings> getSettings();
+    }
+
+    @Override
+    public void execute() {
+        PatchSettings settings = getParameters().getSettings().get();
+
+        try {
+            Patcher.INSTANCE.applyPatches(Logging.getLogger(ApplyPatchesAction.class), null, settings);
+        } catch (Exception e) {
+            throw new GradleException("Failed to apply patches for " + settings.getBranch(), e);
+        }
+    }
+}
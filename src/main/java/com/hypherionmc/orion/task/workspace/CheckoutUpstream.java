@@ -0,0 +1,31 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.task.workspace;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import com.hypherionmc.orion.task.TaskActions;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * @author HypherionSA
+ * Task to pull the linked upstream commit into the upstream directory, without applying any patches.
+ * With pipelined setup enabled, the working directories of all porting branches are patched during the checkout instead
+ */
+public class CheckoutUpstream extends DefaultTask {
+
+    @TaskAction
+    public void checkoutUpstream() throws Exception {
+        OrionPortingExtension extension = getProject().getExtensions().findByType(OrionPortingExtension.class);
+        if (extension == null)
+            throw new GradleException("orionporting extension is not configured");
+
+        TaskActions.INSTANCE.checkoutUpstream(getProject(), getLogger(), extension);
+    }
+
+}
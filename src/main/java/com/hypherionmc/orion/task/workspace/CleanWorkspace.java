@@ -6,8 +6,10 @@
  */
 package com.hypherionmc.orion.task.workspace;
 
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
 import com.hypherionmc.orion.task.TaskActions;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
 import org.gradle.api.tasks.TaskAction;
 
 /**
@@ -18,7 +20,11 @@ public class CleanWorkspace extends DefaultTask {
 
     @TaskAction
     public void cleanupWorkspace() {
-        TaskActions.INSTANCE.cleanWorkspace(getLogger(), getProject());
+        OrionPortingExtension extension = getProject().getExtensions().findByType(OrionPortingExtension.class);
+        if (extension == null)
+            throw new GradleException("orionporting extension is not configured");
+
+        TaskActions.INSTANCE.cleanWorkspace(getLogger(), getProject(), extension);
     }
 
 }
@@ -10,13 +10,29 @@ import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
 import com.hypherionmc.orion.task.TaskActions;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
 
 /**
  * @author HypherionSA
- * Task to prepare a porting workspace. Includes pulling the upstream branch, and applying patches if any
+ * Task to prepare a porting workspace. Includes pulling the upstream branch, and applying patches if any.
+ * Patches are applied in a worker, so the tasks of other branches can run at the same time
  */
-public class SetupWorkspace extends DefaultTask {
+public abstract class SetupWorkspace extends DefaultTask {
+
+    private final Property<String> branch = getProject().getObjects().property(String.class);
+
+    @Input
+    public Property<String> getBranch() {
+        return branch;
+    }
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
 
     @TaskAction
     public void setupWorkspace() throws Exception {
@@ -24,7 +40,7 @@ public class SetupWorkspace extends DefaultTask {
         if (extension == null)
             throw new GradleException("orionporting extension is not configured");
 
-        TaskActions.INSTANCE.setupWorkspace(getProject(), getLogger(), extension);
+        TaskActions.INSTANCE.setupWorkspace(getProject(), getWorkerExecutor(), getLogger(), extension, branch.get());
     }
 
 }
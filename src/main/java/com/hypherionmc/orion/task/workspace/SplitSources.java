@@ -10,19 +10,28 @@ import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
 import com.hypherionmc.orion.task.TaskActions;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.TaskAction;
 
 import java.io.IOException;
 
 public class SplitSources extends DefaultTask {
 
+    private final Property<String> branch = getProject().getObjects().property(String.class);
+
+    @Input
+    public Property<String> getBranch() {
+        return branch;
+    }
+
     @TaskAction
     public void splitSources() throws IOException {
         OrionPortingExtension extension = getProject().getExtensions().findByType(OrionPortingExtension.class);
         if (extension == null)
             throw new GradleException("orionporting extension is not configured");
 
-        TaskActions.INSTANCE.splitSources(getProject(), getLogger(), extension);
+        TaskActions.INSTANCE.splitSources(getProject(), getLogger(), extension, branch.get());
     }
 
 }
@@ -0,0 +1,207 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import org.eclipse.jgit.ignore.FastIgnoreRule;
+import org.eclipse.jgit.ignore.IgnoreNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * @author HypherionSA
+ * Gitignore style rules for files that should never be diffed, like build outputs and IDE folders.
+ * Ignored directories are pruned while walking, so their contents are never visited
+ */
+public class DiffIgnore {
+
+    private final IgnoreNode rules;
+    private final boolean useGitIgnore;
+
+    // Parsed gitignore files per directory, so every file is only read once
+    private final Map<Path, Optional<IgnoreNode>> gitIgnores = new ConcurrentHashMap<>();
+
+    public DiffIgnore(List<String> rules, boolean useGitIgnore) {
+        this.rules = new IgnoreNode(rules.stream().map(FastIgnoreRule::new).filter(r -> !r.isEmpty()).collect(Collectors.toList()));
+        this.useGitIgnore = useGitIgnore;
+    }
+
+    public static DiffIgnore of(OrionPortingExtension extension) {
+        return new DiffIgnore(extension.getDiffIgnore().get(), extension.getUseGitIgnore().get());
+    }
+
+    /**
+     * Check a path against the configured rules, and the gitignore files of its parent directories when enabled.
+     * Gives the same result as {@link #collectIgnored(Path)}
+     * @param root The root of the tree
+     * @param path The path, relative to the root of the tree, using / as separator
+     * @param isDirectory If the path is a directory
+     * @return True if the path, or any of its parent directories, is ignored
+     */
+    public boolean isIgnored(Path root, String path, boolean isDirectory) {
+        String[] parts = path.split("/");
+        Deque<Map.Entry<Path, IgnoreNode>> nodes = new ArrayDeque<>();
+        Path parent = root;
+
+        for (int i = 0; i < parts.length; i++) {
+            // The gitignore of a directory applies to its contents, not to the directory itself
+            Path dir = parent;
+            if (useGitIgnore)
+                gitIgnore(dir).ifPresent(node -> nodes.push(new AbstractMap.SimpleEntry<>(dir, node)));
+
+            Path current = dir.resolve(parts[i]);
+            if (check(root, current, i < parts.length - 1 || isDirectory, nodes))
+                return true;
+
+            parent = current;
+        }
+
+        return false;
+    }
+
+    /**
+     * Walk a tree, and collect the top most ignored paths. Ignored directories are not walked into
+     * @param root The root of the tree
+     * @return The ignored paths, relative to the root. Directories end with /
+     * @throws IOException Failed to walk the tree
+     */
+    public Set<String> collectIgnored(Path root) throws IOException {
+        Set<String> ignored = new TreeSet<>();
+        if (!Files.isDirectory(root))
+            return ignored;
+
+        try {
+            walk(root, ignored);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return ignored;
+    }
+
+    private void walk(Path root, Set<String> ignored) throws IOException {
+        // Gitignore files found while walking, from the deepest directory to the root
+        Deque<Map.Entry<Path, IgnoreNode>> nodes = new ArrayDeque<>();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && check(root, dir, true, nodes)) {
+                    ignored.add(relative(root, dir) + "/");
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                if (useGitIgnore)
+                    gitIgnore(dir).ifPresent(node -> nodes.push(new AbstractMap.SimpleEntry<>(dir, node)));
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (check(root, file, false, nodes))
+                    ignored.add(relative(root, file));
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                if (!nodes.isEmpty() && nodes.peek().getKey().equals(dir))
+                    nodes.pop();
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * List the files of a tree, leaving out collected ignored paths. Ignored directories are pruned, not walked into
+     * @param root The root of the tree
+     * @param ignored Paths relative to the root, as returned by {@link #collectIgnored(Path)}. Directories end with /
+     * @return The files that are not ignored, relative to the root, using / as separator
+     * @throws IOException Failed to walk the tree
+     */
+    public static Set<String> listFiles(Path root, Set<String> ignored) throws IOException {
+        Set<String> files = new TreeSet<>();
+        if (!Files.isDirectory(root))
+            return files;
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && ignored.contains(relative(root, dir) + "/"))
+                    return FileVisitResult.SKIP_SUBTREE;
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String path = relative(root, file);
+                if (attrs.isRegularFile() && !ignored.contains(path))
+                    files.add(path);
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return files;
+    }
+
+    /**
+     * Check a single path. The configured rules win, then the closest gitignore with a matching rule
+     * @param root The root of the tree
+     * @param path The path to check
+     * @param isDirectory If the path is a directory
+     * @param nodes The gitignore files of the parent directories, from the deepest directory to the root
+     */
+    private boolean check(Path root, Path path, boolean isDirectory, Deque<Map.Entry<Path, IgnoreNode>> nodes) {
+        Boolean result = rules.checkIgnored(relative(root, path), isDirectory);
+        if (result != null)
+            return result;
+
+        for (Map.Entry<Path, IgnoreNode> entry : nodes) {
+            result = entry.getValue().checkIgnored(relative(entry.getKey(), path), isDirectory);
+            if (result != null)
+                return result;
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the parsed gitignore file of a directory
+     */
+    private Optional<IgnoreNode> gitIgnore(Path dir) {
+        return gitIgnores.computeIfAbsent(dir, d -> {
+            Path file = d.resolve(".gitignore");
+            if (!Files.isRegularFile(file))
+                return Optional.empty();
+
+            IgnoreNode node = new IgnoreNode();
+            try (InputStream is = Files.newInputStream(file)) {
+                node.parse(is);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return Optional.of(node);
+        });
+    }
+
+    private static String relative(Path root, Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author HypherionSA
+ * Rsync style directory sync. Only files that actually changed are copied, so unchanged files keep their
+ * modification times, and IDEs and incremental compilation don't treat them as changed
+ */
+public class DirectorySync {
+
+    public static final DirectorySync INSTANCE = new DirectorySync();
+
+    DirectorySync() {}
+
+    /**
+     * Make the target directory an exact copy of the source directory
+     * @param source The directory to copy from
+     * @param target The directory to copy to
+     * @return The number of copied, deleted and skipped files
+     * @throws IOException Failed to read or write a file
+     */
+    public Result sync(Path source, Path target) throws IOException {
+        return sync(source, target, null, null);
+    }
+
+    /**
+     * Make the target directory an exact copy of the source directory
+     * @param source The directory to copy from
+     * @param target The directory to copy to
+     * @param fingerprints Optional fingerprint cache, used to compare file contents without reading unchanged files
+     * @param ignore Optional rules for target paths that are kept, even when they don't exist in the source
+     * @return The number of copied, deleted and skipped files
+     * @throws IOException Failed to read or write a file
+     */
+    public Result sync(Path source, Path target, @Nullable FingerprintService fingerprints, @Nullable DiffIgnore ignore) throws IOException {
+        Result result = new Result();
+        Files.createDirectories(target);
+
+        Set<Path> sourceFiles;
+        try (Stream<Path> stream = Files.walk(source)) {
+            sourceFiles = stream.filter(Files::isRegularFile).map(source::relativize).collect(Collectors.toSet());
+        }
+
+        // Copy new and changed files
+        try {
+            sourceFiles.parallelStream().forEach(relative -> {
+                Path from = source.resolve(relative);
+                Path to = target.resolve(relative);
+
+                try {
+                    if (isSame(from, to, fingerprints)) {
+                        result.skipped.incrementAndGet();
+                        return;
+                    }
+
+                    FileIO.INSTANCE.copy(from, to, true);
+                    result.copied.incrementAndGet();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Delete files that no longer exist in the source. Ignored paths, like build outputs, are never touched,
+        // and directories are only removed once they are empty
+        Files.walkFileTree(target, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(target) && ignore != null && ignore.isIgnored(target, relative(target, dir), true))
+                    return FileVisitResult.SKIP_SUBTREE;
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path relative = target.relativize(file);
+                if (sourceFiles.contains(relative) || (ignore != null && ignore.isIgnored(target, relative(target, file), false)))
+                    return FileVisitResult.CONTINUE;
+
+                Files.delete(file);
+                result.deleted.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null)
+                    throw exc;
+
+                if (!dir.equals(target) && !Files.isDirectory(source.resolve(target.relativize(dir)))) {
+                    try {
+                        Files.delete(dir);
+                    } catch (DirectoryNotEmptyException ignored) {
+                        // Still holds ignored files
+                    }
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Check if two files are the same. Size and modification time are compared first, and only
+     * files with the same size but a different modification time have their content compared
+     */
+    private boolean isSame(Path from, Path to, @Nullable FingerprintService fingerprints) throws IOException {
+        if (!Files.isRegularFile(to))
+            return false;
+
+        if (Files.size(from) != Files.size(to))
+            return false;
+
+        if (Files.getLastModifiedTime(from).equals(Files.getLastModifiedTime(to)))
+            return true;
+
+        // splitSources always passes the fingerprint cache. The direct comparison is for callers without one
+        if (fingerprints != null)
+            return fingerprints.sameContent(from, to);
+
+        return FileIO.INSTANCE.contentEquals(from, to);
+    }
+
+    private static String relative(Path root, Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    @Getter
+    public static class Result {
+        private final AtomicInteger copied = new AtomicInteger();
+        private final AtomicInteger deleted = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * @author HypherionSA
+ * File copies and comparisons that don't pass file contents through heap buffers. Copies are done with
+ * FileChannel.transferTo, so the kernel can move the data directly. Larger files are compared memory mapped,
+ * smaller ones through reusable direct buffers
+ */
+public class FileIO {
+
+    public static final FileIO INSTANCE = new FileIO();
+
+    // Files smaller than this are cheaper to read than to map
+    public static final long MAP_THRESHOLD = 64 * 1024;
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Windows keeps mapped files locked until the mapping is garbage collected, so they could not be replaced afterwards
+    private static final boolean CAN_MAP = !System.getProperty("os.name", "").toLowerCase().contains("win");
+
+    // Two buffers per thread, so comparisons from parallel streams don't allocate
+    private static final ThreadLocal<ByteBuffer[]> BUFFERS = ThreadLocal.withInitial(() -> new ByteBuffer[] {
+            ByteBuffer.allocateDirect(BUFFER_SIZE),
+            ByteBuffer.allocateDirect(BUFFER_SIZE)
+    });
+
+    FileIO() {}
+
+    /**
+     * Copy a file, replacing the target if it exists
+     * @param from The file to copy
+     * @param to The file to copy to. Parent directories are created if needed
+     * @param keepModified Copy the modification time of the source file
+     * @throws IOException Failed to read or write the file
+     */
+    public void copy(Path from, Path to, boolean keepModified) throws IOException {
+        if (to.getParent() != null)
+            Files.createDirectories(to.getParent());
+
+        // The target may be hard linked into the snapshot cache, so never write through it
+        Files.deleteIfExists(to);
+
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+            long size = in.size();
+            long position = 0;
+
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+
+        if (keepModified)
+            Files.setLastModifiedTime(to, Files.getLastModifiedTime(from));
+    }
+
+    /**
+     * Copy a directory tree, replacing existing files in the target
+     * @param from The directory to copy
+     * @param to The directory to copy to
+     * @throws IOException Failed to read or write a file
+     */
+    public void copyDirectory(Path from, Path to) throws IOException {
+        Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                copy(file, to.resolve(from.relativize(file)), true);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Check if two files have the same content
+     * @param a The first file
+     * @param b The second file
+     * @return True if both files exist, and have the same content
+     * @throws IOException Failed to read one of the files
+     */
+    public boolean contentEquals(Path a, Path b) throws IOException {
+        if (!Files.isRegularFile(a) || !Files.isRegularFile(b))
+            return false;
+
+        long size = Files.size(a);
+        if (size != Files.size(b))
+            return false;
+
+        try (FileChannel ca = FileChannel.open(a, StandardOpenOption.READ);
+             FileChannel cb = FileChannel.open(b, StandardOpenOption.READ)) {
+            if (size < MAP_THRESHOLD || !CAN_MAP)
+                return channelEquals(ca, cb);
+
+            for (long position = 0; position < size; position += MAP_WINDOW) {
+                long length = Math.min(MAP_WINDOW, size - position);
+                MappedByteBuffer ma = ca.map(FileChannel.MapMode.READ_ONLY, position, length);
+                MappedByteBuffer mb = cb.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                if (!ma.equals(mb))
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean channelEquals(FileChannel ca, FileChannel cb) throws IOException {
+        ByteBuffer[] buffers = BUFFERS.get();
+        ByteBuffer ba = buffers[0];
+        ByteBuffer bb = buffers[1];
+
+        while (true) {
+            ba.clear();
+            bb.clear();
+            boolean endA = fill(ca, ba);
+            boolean endB = fill(cb, bb);
+            ba.flip();
+            bb.flip();
+
+            if (!ba.equals(bb))
+                return false;
+
+            if (endA || endB)
+                return endA == endB;
+        }
+    }
+
+    /**
+     * Read until the buffer is full, or the channel has no more data
+     * @return True if the end of the channel was reached
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                return true;
+        }
+        return false;
+    }
+}
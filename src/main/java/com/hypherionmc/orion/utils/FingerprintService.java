@@ -0,0 +1,244 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.gradle.api.Project;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author HypherionSA
+ * File fingerprint cache shared by all Orion tasks. Maps a file's path, size, modification time and inode to
+ * its content hash, so files only need to be read when they actually changed.
+ * The cache stays in memory for as long as the daemon lives, and is persisted to .gradle/orion/fingerprints.bin
+ * Used by splitSources, watchPatches and skipped publishing. Checkouts write git blobs, which are already
+ * addressed by their hash, and Gradle's own input snapshots cover the Origami preprocessing
+ */
+public abstract class FingerprintService implements BuildService<FingerprintService.Params>, AutoCloseable {
+
+    public static final String NAME = "orionFingerprints";
+    private static final Logger LOGGER = Logging.getLogger(FingerprintService.class);
+    private static final int MAGIC = 0x4F524650;
+    private static final int VERSION = 1;
+
+    // Caches survive between builds in the same daemon, keyed by their cache file
+    private static final Map<File, Map<String, Fingerprint>> CACHES = new ConcurrentHashMap<>();
+
+    // Entries of deleted files are only pruned once a cache doubled in size since it was last pruned
+    private static final int MIN_PRUNE_SIZE = 10_000;
+    private static final Map<File, Integer> PRUNE_AT = new ConcurrentHashMap<>();
+
+    private final Object[] locks = new Object[64];
+    private final File cacheFile;
+    private final Map<String, Fingerprint> fingerprints;
+    private volatile boolean dirty = false;
+
+    public interface Params extends BuildServiceParameters {
+        RegularFileProperty getCacheFile();
+    }
+
+    public FingerprintService() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        this.cacheFile = getParameters().getCacheFile().get().getAsFile();
+        this.fingerprints = CACHES.computeIfAbsent(cacheFile, FingerprintService::load);
+        PRUNE_AT.putIfAbsent(cacheFile, pruneSize(fingerprints.size()));
+    }
+
+    /**
+     * Register the service for the build, if it is not registered already
+     * @param project The project the plugin is applied to
+     * @return The service provider
+     */
+    public static Provider<FingerprintService> register(Project project) {
+        return project.getGradle().getSharedServices().registerIfAbsent(NAME, FingerprintService.class, spec ->
+                spec.getParameters().getCacheFile().set(new File(project.getRootProject().getRootDir(), ".gradle/orion/fingerprints.bin")));
+    }
+
+    /**
+     * Get the content hash of a file. The file is only read if it changed since it was last hashed
+     * @param file The file to hash
+     * @return The content hash
+     * @throws IOException Failed to read the file
+     */
+    public byte[] getHash(Path file) throws IOException {
+        String key = file.toAbsolutePath().toString();
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+
+        Fingerprint current = fingerprints.get(key);
+        if (current != null && current.matches(attrs))
+            return current.hash;
+
+        synchronized (locks[(key.hashCode() & 0x7fffffff) % locks.length]) {
+            current = fingerprints.get(key);
+            if (current != null && current.matches(attrs))
+                return current.hash;
+
+            Fingerprint fingerprint = new Fingerprint(attrs.size(), attrs.lastModifiedTime().toMillis(), fileKey(attrs), hash(file));
+            fingerprints.put(key, fingerprint);
+            dirty = true;
+            return fingerprint.hash;
+        }
+    }
+
+    /**
+     * Check if a file changed since it was last seen, without reading it
+     * @param file The file to check
+     * @return True if the file is unknown, or its size, modification time or inode changed
+     * @throws IOException Failed to read the file attributes
+     */
+    public boolean hasChanged(Path file) throws IOException {
+        Fingerprint current = fingerprints.get(file.toAbsolutePath().toString());
+        return current == null || !current.matches(Files.readAttributes(file, BasicFileAttributes.class));
+    }
+
+    /**
+     * Check if the content of a file changed since it was last hashed, and record its new hash
+     * @param file The file to check
+     * @return True if the content is different, or the file was never hashed before
+     * @throws IOException Failed to read the file
+     */
+    public boolean hasContentChanged(Path file) throws IOException {
+        Fingerprint previous = fingerprints.get(file.toAbsolutePath().toString());
+
+        // Always hash, so a file seen for the first time is known on the next check
+        byte[] hash = getHash(file);
+        return previous == null || !Arrays.equals(previous.hash, hash);
+    }
+
+    /**
+     * Check if two files have the same content, using cached hashes where possible
+     * @param a The first file
+     * @param b The second file
+     * @return True if both files have the same content
+     * @throws IOException Failed to read one of the files
+     */
+    public boolean sameContent(Path a, Path b) throws IOException {
+        return Files.size(a) == Files.size(b) && Arrays.equals(getHash(a), getHash(b));
+    }
+
+    @Override
+    public void close() {
+        if (!dirty)
+            return;
+
+        // Drop entries for files that no longer exist, so the cache doesn't grow forever. Checking every entry
+        // costs a stat per file, so it is only done once the cache grew enough to be worth it
+        if (fingerprints.size() >= PRUNE_AT.getOrDefault(cacheFile, MIN_PRUNE_SIZE)) {
+            fingerprints.keySet().removeIf(key -> !new File(key).exists());
+            PRUNE_AT.put(cacheFile, pruneSize(fingerprints.size()));
+        }
+
+        try {
+            cacheFile.getParentFile().mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(fingerprints.size());
+
+                for (Map.Entry<String, Fingerprint> entry : fingerprints.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().size);
+                    out.writeLong(entry.getValue().modified);
+                    out.writeInt(entry.getValue().fileKey);
+                    out.write(entry.getValue().hash);
+                }
+            }
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save fingerprint cache {}", cacheFile, e);
+        }
+    }
+
+    private static Map<String, Fingerprint> load(File cacheFile) {
+        Map<String, Fingerprint> fingerprints = new ConcurrentHashMap<>();
+        if (!cacheFile.exists())
+            return fingerprints;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return fingerprints;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                int fileKey = in.readInt();
+                byte[] hash = new byte[20];
+                in.readFully(hash);
+                fingerprints.put(key, new Fingerprint(size, modified, fileKey, hash));
+            }
+        } catch (IOException e) {
+            LOGGER.info("Ignoring unreadable fingerprint cache {}", cacheFile);
+            fingerprints.clear();
+        }
+
+        return fingerprints;
+    }
+
+    private static int pruneSize(int size) {
+        return Math.max(MIN_PRUNE_SIZE, size * 2);
+    }
+
+    private static int fileKey(BasicFileAttributes attrs) {
+        return Objects.hashCode(attrs.fileKey());
+    }
+
+    private static byte[] hash(Path file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[8192];
+
+            try (InputStream is = Files.newInputStream(file)) {
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Fingerprint {
+        private final long size;
+        private final long modified;
+        private final int fileKey;
+        private final byte[] hash;
+
+        Fingerprint(long size, long modified, int fileKey, byte[] hash) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && modified == attrs.lastModifiedTime().toMillis() && fileKey == FingerprintService.fileKey(attrs);
+        }
+    }
+}
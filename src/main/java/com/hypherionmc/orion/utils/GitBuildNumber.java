@@ -0,0 +1,174 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * @author HypherionSA
+ * Computes build numbers as the number of commits since the last tag.
+ * The result is cached under .gradle/orion, keyed by the HEAD commit and the tagged commits, and extended incrementally when HEAD moves forward
+ */
+public class GitBuildNumber {
+
+    public static final GitBuildNumber INSTANCE = new GitBuildNumber();
+    private static final Logger LOGGER = Logging.getLogger(GitBuildNumber.class);
+
+    GitBuildNumber() {}
+
+    /**
+     * Get the number of commits since the last tag, for the repository containing the given directory
+     * @param rootDir The root directory of the project
+     * @return The build number, or 0 if it cannot be computed
+     */
+    public int getBuildNumber(File rootDir) {
+        File cacheFile = new File(rootDir, ".gradle/orion/build-number.properties");
+
+        try (Repository repository = new FileRepositoryBuilder().findGitDir(rootDir).setMustExist(true).build();
+             RevWalk revWalk = new RevWalk(repository)) {
+
+            ObjectId headId = repository.resolve("HEAD");
+            if (headId == null)
+                return 0;
+
+            Set<ObjectId> tagged = new HashSet<>();
+            for (Ref ref : repository.getRefDatabase().getRefsByPrefix("refs/tags/")) {
+                Ref peeled = repository.getRefDatabase().peel(ref);
+                tagged.add(peeled.getPeeledObjectId() != null ? peeled.getPeeledObjectId() : ref.getObjectId());
+            }
+
+            // Moving, deleting or adding a tag changes the key, even if the number of tags stays the same
+            String tags = tagsKey(tagged);
+            Properties cache = readCache(cacheFile);
+            boolean sameTags = tags.equals(cache.getProperty("tags"));
+            if (sameTags && headId.getName().equals(cache.getProperty("head")))
+                return Integer.parseInt(cache.getProperty("count"));
+
+            RevCommit head = revWalk.parseCommit(headId);
+            int count = -1;
+
+            // Extend the cached count, if HEAD only moved forward and the tags did not change
+            String cachedHead = cache.getProperty("head");
+            if (cachedHead != null && sameTags) {
+                RevCommit previous = revWalk.parseCommit(ObjectId.fromString(cachedHead));
+
+                if (revWalk.isMergedInto(previous, head)) {
+                    revWalk.reset();
+                    count = countSince(revWalk, head, previous, tagged, Integer.parseInt(cache.getProperty("count")));
+                }
+            }
+
+            if (count < 0) {
+                revWalk.reset();
+                count = countSince(revWalk, head, null, tagged, 0);
+            }
+
+            cache.setProperty("head", headId.getName());
+            cache.setProperty("count", String.valueOf(count));
+            cache.setProperty("tags", tags);
+            writeCache(cacheFile, cache);
+
+            return count;
+        } catch (Exception e) {
+            LOGGER.warn("Failed to compute build number from git", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Count the first parent commits from HEAD, until a tagged commit or the previous HEAD is reached
+     * @param revWalk The walk to use
+     * @param head The commit to start from
+     * @param previous The previously cached HEAD, if any
+     * @param tagged All tagged commits
+     * @param base The count of the previous HEAD
+     * @return The number of commits since the last tag
+     */
+    private int countSince(RevWalk revWalk, RevCommit head, RevCommit previous, Set<ObjectId> tagged, int base) throws IOException {
+        int count = 0;
+        RevCommit commit = head;
+
+        while (commit != null) {
+            if (tagged.contains(commit))
+                return count;
+
+            if (commit.equals(previous))
+                return base + count;
+
+            count++;
+            commit = commit.getParentCount() > 0 ? revWalk.parseCommit(commit.getParent(0)) : null;
+        }
+
+        return count;
+    }
+
+    /**
+     * Hash the tagged commits in sorted order, so the key does not depend on the order refs are listed in
+     * @param tagged All tagged commits
+     * @return The hex encoded SHA-1 of the sorted commit ids
+     */
+    private String tagsKey(Set<ObjectId> tagged) throws NoSuchAlgorithmException {
+        List<ObjectId> sorted = new ArrayList<>(tagged);
+        Collections.sort(sorted);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+        for (ObjectId id : sorted) {
+            id.copyRawTo(raw, 0);
+            digest.update(raw);
+        }
+
+        return ObjectId.fromRaw(digest.digest()).getName();
+    }
+
+    private Properties readCache(File cacheFile) {
+        Properties properties = new Properties();
+
+        if (cacheFile.exists()) {
+            try (InputStream is = new FileInputStream(cacheFile)) {
+                properties.load(is);
+            } catch (IOException e) {
+                LOGGER.info("Ignoring unreadable build number cache {}", cacheFile);
+            }
+        }
+
+        return properties;
+    }
+
+    private void writeCache(File cacheFile, Properties properties) {
+        cacheFile.getParentFile().mkdirs();
+
+        try (OutputStream os = new FileOutputStream(cacheFile)) {
+            properties.store(os, "Orion build number cache");
+        } catch (IOException e) {
+            LOGGER.info("Failed to write build number cache {}", cacheFile);
+        }
+    }
+}
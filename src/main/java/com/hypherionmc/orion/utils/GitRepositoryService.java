@@ -0,0 +1,106 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author HypherionSA
+ * Build scoped service that keeps one open JGit repository per root directory, so pack indexes and
+ * delta caches are reused by every task in the build, instead of being loaded again on each checkout
+ */
+public abstract class GitRepositoryService implements BuildService<GitRepositoryService.Params>, AutoCloseable {
+
+    public static final String NAME = "orionGitRepositories";
+    private static final int MB = 1024 * 1024;
+
+    private final Map<File, Repository> repositories = new ConcurrentHashMap<>();
+    private final boolean tunedCache;
+
+    public interface Params extends BuildServiceParameters {
+        Property<Integer> getPackedGitLimit();
+        Property<Integer> getDeltaBaseCacheLimit();
+    }
+
+    public GitRepositoryService() {
+        // The JGit window cache is global to the daemon, so it is only changed when a limit is configured,
+        // and reset to the JGit defaults once the build is done
+        this.tunedCache = getParameters().getPackedGitLimit().isPresent() || getParameters().getDeltaBaseCacheLimit().isPresent();
+
+        if (tunedCache) {
+            WindowCacheConfig config = new WindowCacheConfig();
+            if (getParameters().getPackedGitLimit().isPresent())
+                config.setPackedGitLimit((long) getParameters().getPackedGitLimit().get() * MB);
+            if (getParameters().getDeltaBaseCacheLimit().isPresent())
+                config.setDeltaBaseCacheLimit(getParameters().getDeltaBaseCacheLimit().get() * MB);
+            config.install();
+        }
+    }
+
+    /**
+     * Register the service for the build, if it is not registered already
+     * @param project The project the plugin is applied to
+     * @return The service provider
+     */
+    public static Provider<GitRepositoryService> register(Project project) {
+        return project.getGradle().getSharedServices().registerIfAbsent(NAME, GitRepositoryService.class, spec -> {
+            OrionPortingExtension extension = project.getRootProject().getExtensions().findByType(OrionPortingExtension.class);
+
+            if (extension != null) {
+                spec.getParameters().getPackedGitLimit().set(extension.getPackedGitLimit());
+                spec.getParameters().getDeltaBaseCacheLimit().set(extension.getDeltaBaseCacheLimit());
+            }
+        });
+    }
+
+    /**
+     * Get the shared repository for the root project. The repository is owned by the service, and must not be closed
+     * @param project The project the plugin is applied to
+     * @return The shared repository
+     */
+    public static Repository getRepository(Project project) {
+        return register(project).get().getRepository(project.getRootProject().getRootDir());
+    }
+
+    /**
+     * Get the shared repository for a root directory, opening it on first use
+     * @param rootDir The directory containing the .git folder
+     * @return The shared repository
+     */
+    public Repository getRepository(File rootDir) {
+        return repositories.computeIfAbsent(rootDir.getAbsoluteFile(), dir -> {
+            try {
+                return new FileRepositoryBuilder().setGitDir(new File(dir, ".git")).setMustExist(true).build();
+            } catch (IOException e) {
+                throw new GradleException("Failed to open git repository in " + dir, e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        repositories.values().forEach(Repository::close);
+        repositories.clear();
+
+        if (tunedCache)
+            new WindowCacheConfig().install();
+    }
+}
@@ -10,12 +10,28 @@ import com.hypherionmc.orion.Constants;
 import com.hypherionmc.orion.plugin.OrionExtension;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.api.credentials.Credentials;
+import org.gradle.api.credentials.PasswordCredentials;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.publish.maven.MavenArtifact;
+import org.gradle.api.publish.maven.MavenPublication;
+import org.gradle.api.publish.maven.tasks.GenerateMavenPom;
+import org.gradle.api.publish.maven.tasks.PublishToMavenRepository;
+import org.gradle.api.publish.tasks.GenerateModuleMetadata;
+import org.gradle.api.tasks.bundling.AbstractArchiveTask;
+import org.gradle.internal.artifacts.repositories.AuthenticationSupportedInternal;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -55,6 +71,7 @@ public class GradleUtils {
                 p.getRepositories().maven(m -> {
                     m.setName("First Dark Dev Maven");
                     m.setUrl(Constants.MAVEN_URL);
+                    filterContent(m, extension.getReleasesMavenGroups().get());
                 });
             }
 
@@ -63,6 +80,7 @@ public class GradleUtils {
                 p.getRepositories().maven(m -> {
                     m.setName("First Dark Dev Snapshots Maven");
                     m.setUrl(Constants.MAVEN_SNAPSHOT_URL);
+                    filterContent(m, extension.getSnapshotsMavenGroups().get());
                 });
             }
 
@@ -71,13 +89,120 @@ public class GradleUtils {
                 p.getRepositories().maven(m -> {
                     m.setName("First Dark Dev Mirror");
                     m.setUrl(Constants.MAVEN_CENTRAL_URL);
+                    filterContent(m, extension.getMirrorMavenGroups().get());
                 });
             }
 
+            // Skip publishing unchanged artifacts
+            if (extension.getSkipUnchangedPublishing().get())
+                p.getPlugins().withId("maven-publish", m -> configurePublishing(p, extension));
+
             p.afterEvaluate(pp -> applyTools(extension, p));
         });
     }
 
+    /**
+     * INTERNAL: Skip publications whose artifacts are all published already. Only the artifacts of a publication
+     * are hashed, when its publish task is about to run
+     * @param project The project to configure publishing for
+     * @param extension The configured gradle extension
+     */
+    private void configurePublishing(Project project, OrionExtension extension) {
+        Provider<FingerprintService> fingerprints = FingerprintService.register(project);
+        Provider<PublishingService> publishing = PublishingService.register(project, extension.getPublishingConnections().get());
+
+        // Archives with build timestamps never match their published checksums. Build scripts can still opt out,
+        // by configuring the archive tasks after setup
+        project.getTasks().withType(AbstractArchiveTask.class).configureEach(t -> {
+            t.setPreserveFileTimestamps(false);
+            t.setReproducibleFileOrder(true);
+        });
+
+        project.getTasks().withType(PublishToMavenRepository.class).configureEach(t -> {
+            t.usesService(fingerprints);
+            t.usesService(publishing);
+            t.onlyIf("Artifacts changed since they were last published", c -> {
+                MavenArtifactRepository repository = t.getRepository();
+                MavenPublication publication = t.getPublication();
+                String scheme = repository.getUrl().getScheme();
+
+                // Snapshots are republished with a new timestamp, and only remote repositories need checking
+                if (publication.getVersion().endsWith("-SNAPSHOT") || !("http".equals(scheme) || "https".equals(scheme)))
+                    return true;
+
+                Map<String, File> artifacts = publicationArtifacts(project, publication);
+                if (artifacts.isEmpty())
+                    return true;
+
+                if (publishing.get().isPublished(repository.getUrl(), configuredCredentials(repository), artifacts, fingerprints.get())) {
+                    c.getLogger().lifecycle("Skipping {}: all {} artifacts are already published to {}", c.getPath(), artifacts.size(), repository.getName());
+                    return false;
+                }
+
+                return true;
+            });
+        });
+    }
+
+    /**
+     * INTERNAL: Look up the credentials of a repository. getCredentials() would assign empty credentials to a
+     * repository without any, and its uploads would then fail
+     * @param repository The repository to publish to
+     * @return The configured password credentials, or null
+     */
+    @Nullable
+    private static PasswordCredentials configuredCredentials(MavenArtifactRepository repository) {
+        if (!(repository instanceof AuthenticationSupportedInternal))
+            return null;
+
+        Credentials credentials = ((AuthenticationSupportedInternal) repository).getConfiguredCredentials().getOrNull();
+        return credentials instanceof PasswordCredentials ? (PasswordCredentials) credentials : null;
+    }
+
+    /**
+     * INTERNAL: Collect the files of a publication, including its POM and module metadata
+     * @param project The project the publication belongs to
+     * @param publication The publication
+     * @return The files, keyed by their path in a maven repository
+     */
+    private Map<String, File> publicationArtifacts(Project project, MavenPublication publication) {
+        String dir = publication.getGroupId().replace('.', '/') + "/" + publication.getArtifactId() + "/" + publication.getVersion() + "/";
+        String baseName = publication.getArtifactId() + "-" + publication.getVersion();
+        String suffix = publication.getName().substring(0, 1).toUpperCase() + publication.getName().substring(1) + "Publication";
+        Map<String, File> artifacts = new LinkedHashMap<>();
+
+        for (MavenArtifact artifact : publication.getArtifacts()) {
+            String classifier = artifact.getClassifier() == null || artifact.getClassifier().isEmpty() ? "" : "-" + artifact.getClassifier();
+            artifacts.put(dir + baseName + classifier + "." + artifact.getExtension(), artifact.getFile());
+        }
+
+        Task pom = project.getTasks().findByName("generatePomFileFor" + suffix);
+        if (pom instanceof GenerateMavenPom)
+            artifacts.put(dir + baseName + ".pom", ((GenerateMavenPom) pom).getDestination());
+
+        Task module = project.getTasks().findByName("generateMetadataFileFor" + suffix);
+        if (module instanceof GenerateModuleMetadata && module.getEnabled())
+            artifacts.put(dir + baseName + ".module", ((GenerateModuleMetadata) module).getOutputFile().get().getAsFile());
+
+        // Missing files can't be compared, so the publication is always uploaded
+        if (artifacts.values().stream().anyMatch(f -> !f.isFile()))
+            return new LinkedHashMap<>();
+
+        return artifacts;
+    }
+
+    /**
+     * INTERNAL: Restrict a repository to the groups it serves, so Gradle does not probe it for every dependency
+     * @param repository The repository to filter
+     * @param groups Regexes of the groups served by the repository. Empty to disable filtering
+     */
+    private void filterContent(MavenArtifactRepository repository, List<String> groups) {
+        if (groups.isEmpty())
+            return;
+
+        repository.content(c -> groups.forEach(c::includeGroupByRegex));
+    }
+
     private void applyTools(OrionExtension extension, Project p) {
         if (extension.getMultiProject().get() && p.getName().equalsIgnoreCase(p.getRootProject().getName())) {
             return;
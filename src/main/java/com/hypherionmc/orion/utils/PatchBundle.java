@@ -0,0 +1,247 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author HypherionSA
+ * Packed patch bundles. A bundle is a zip archive holding the same entries as the patches tree of a branch.
+ * The zip central directory acts as the index, so single patches can be read without unpacking the bundle
+ */
+public class PatchBundle {
+
+    public static final PatchBundle INSTANCE = new PatchBundle();
+    public static final String EXTENSION = ".zip";
+
+    PatchBundle() {}
+
+    /**
+     * Get the bundle file for a porting branch
+     * @param patchesDir The root patches directory
+     * @param branch The porting branch
+     * @return The bundle file. It may not exist
+     */
+    public File getBundle(File patchesDir, String branch) {
+        return new File(patchesDir, branch + EXTENSION);
+    }
+
+    /**
+     * Pack a patches tree into a bundle. Entries are written in sorted order, so bundles are reproducible
+     * @param tree The patches tree to pack
+     * @param bundle The bundle to write
+     * @return The number of patches packed
+     * @throws IOException Failed to read or write the patches
+     */
+    public int pack(File tree, File bundle) throws IOException {
+        Path root = tree.toPath();
+        List<Path> files;
+
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        Files.createDirectories(bundle.getAbsoluteFile().getParentFile().toPath());
+
+        try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(bundle)) {
+            for (Path file : files) {
+                ZipArchiveEntry entry = new ZipArchiveEntry(root.relativize(file).toString().replace(File.separatorChar, '/'));
+                entry.setTime(0);
+                zos.putArchiveEntry(entry);
+                Files.copy(file, zos);
+                zos.closeArchiveEntry();
+            }
+        }
+
+        return files.size();
+    }
+
+    /**
+     * Unpack a bundle into a readable patches tree
+     * @param bundle The bundle to unpack
+     * @param tree The directory to write the patches to
+     * @return The number of patches unpacked
+     * @throws IOException Failed to read or write the patches
+     */
+    public int unpack(File bundle, File tree) throws IOException {
+        int count = 0;
+
+        try (ZipFile zipFile = openZip(bundle)) {
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                if (entry.isDirectory())
+                    continue;
+
+                File target = new File(tree, entry.getName());
+                if (!target.getCanonicalPath().startsWith(tree.getCanonicalPath() + File.separator))
+                    throw new IOException("Bundle entry " + entry.getName() + " is outside of the target directory");
+
+                try (InputStream is = zipFile.getInputStream(entry)) {
+                    FileUtils.copyInputStreamToFile(is, target);
+                }
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Read all patches of a branch into memory, from either the patches tree or the bundle
+     * @param patchesDir The root patches directory
+     * @param branch The porting branch
+     * @param bundled If the patches of the branch are bundled
+     * @return The patches, keyed by name. Empty if the branch has no patches
+     * @throws IOException Failed to read the patches
+     */
+    public Map<String, byte[]> readAll(File patchesDir, String branch, boolean bundled) throws IOException {
+        Map<String, byte[]> patches = new TreeMap<>();
+
+        if (bundled) {
+            File bundle = getBundle(patchesDir, branch);
+            if (!bundle.isFile())
+                return patches;
+
+            try (ZipFile zipFile = openZip(bundle)) {
+                Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+                while (entries.hasMoreElements()) {
+                    ZipArchiveEntry entry = entries.nextElement();
+                    if (entry.isDirectory())
+                        continue;
+
+                    try (InputStream is = zipFile.getInputStream(entry)) {
+                        patches.put(entry.getName(), IOUtils.toByteArray(is));
+                    }
+                }
+            }
+
+            return patches;
+        }
+
+        Path root = new File(patchesDir, branch).toPath();
+        if (!Files.isDirectory(root))
+            return patches;
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        for (Path file : files) {
+            patches.put(root.relativize(file).toString().replace(File.separatorChar, '/'), Files.readAllBytes(file));
+        }
+
+        return patches;
+    }
+
+    /**
+     * Count the patches of a branch, without reading them
+     * @param patchesDir The root patches directory
+     * @param branch The porting branch
+     * @param bundled If the patches of the branch are bundled
+     * @return The number of patches. 0 if the branch has no patches
+     * @throws IOException Failed to list the patches
+     */
+    public int count(File patchesDir, String branch, boolean bundled) throws IOException {
+        if (bundled) {
+            File bundle = getBundle(patchesDir, branch);
+            if (!bundle.isFile())
+                return 0;
+
+            int count = 0;
+            try (ZipFile zipFile = openZip(bundle)) {
+                Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+                while (entries.hasMoreElements()) {
+                    if (!entries.nextElement().isDirectory())
+                        count++;
+                }
+            }
+            return count;
+        }
+
+        Path root = new File(patchesDir, branch).toPath();
+        if (!Files.isDirectory(root))
+            return 0;
+
+        try (Stream<Path> stream = Files.walk(root)) {
+            return (int) stream.filter(Files::isRegularFile).count();
+        }
+    }
+
+    /**
+     * Open a bundle to read single patches from it. The zip central directory is only read once,
+     * so keep the reader open for as long as patches are read
+     * @param bundle The bundle to read from. It does not have to exist
+     * @return The reader. It must be closed once done
+     * @throws IOException Failed to read the bundle
+     */
+    public Reader open(File bundle) throws IOException {
+        return new Reader(bundle.isFile() ? openZip(bundle) : null);
+    }
+
+    private static ZipFile openZip(File bundle) throws IOException {
+        return ZipFile.builder().setFile(bundle).get();
+    }
+
+    /**
+     * Reads single patches from an open bundle, without reading the rest of the bundle
+     */
+    public static class Reader implements Closeable {
+        @Nullable
+        private final ZipFile zipFile;
+
+        Reader(@Nullable ZipFile zipFile) {
+            this.zipFile = zipFile;
+        }
+
+        /**
+         * Read a single patch from the bundle
+         * @param name The patch name, for example src/main/java/Example.java.patch
+         * @return The patch, or null if the bundle does not contain it
+         * @throws IOException Failed to read the bundle
+         */
+        @Nullable
+        public synchronized byte[] read(String name) throws IOException {
+            if (zipFile == null)
+                return null;
+
+            ZipArchiveEntry entry = zipFile.getEntry(name);
+            if (entry == null)
+                return null;
+
+            try (InputStream is = zipFile.getInputStream(entry)) {
+                return IOUtils.toByteArray(is);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (zipFile != null)
+                zipFile.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import codechicken.diffpatch.patch.Patcher;
+import codechicken.diffpatch.util.PatchFile;
+import codechicken.diffpatch.util.PatchMode;
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * @author HypherionSA
+ * Verifies that the patches of every porting branch still apply to a commit, entirely in memory.
+ * Base files are read straight from git, and nothing but the returned rejects is produced
+ */
+public class PatchChecker {
+
+    // Everything the checks need is resolved on the task thread, so the branch threads never touch the project
+    private final Logger logger;
+    private final Repository repository;
+    @Nullable
+    private final ProgressLoggerFactory progress;
+    private final List<String> branches;
+    private final File patchesDir;
+    private final boolean bundlePatches;
+    private final PatchMode patchMode;
+
+    public PatchChecker(Project project, OrionPortingExtension extension) {
+        this.logger = project.getLogger();
+        this.repository = GitRepositoryService.getRepository(project);
+        this.progress = ProgressReporter.factory(project);
+        this.branches = new ArrayList<>(extension.getPortingBranches().get());
+        this.patchesDir = extension.getPatchesDir();
+        this.bundlePatches = extension.getBundlePatches().get();
+        this.patchMode = extension.getPatchMode().get();
+    }
+
+    /**
+     * Check the patches of all porting branches in parallel, on a pool bounded by the number of processors
+     * @param commitId The commit to check the patches against
+     * @return The rejected hunks, per branch and file. Empty if all patches apply
+     * @throws IOException Failed to read the patches or the commit
+     */
+    public Map<String, Map<String, List<String>>> check(String commitId) throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(branches.size(), Runtime.getRuntime().availableProcessors())), r -> {
+            Thread t = new Thread(r, "orion-check-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            Map<String, Future<Map<String, List<String>>>> futures = new LinkedHashMap<>();
+            for (String b : branches) {
+                futures.put(b, executor.submit(() -> checkBranch(b, commitId)));
+            }
+
+            Map<String, Map<String, List<String>>> rejects = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<Map<String, List<String>>>> entry : futures.entrySet()) {
+                Map<String, List<String>> branchRejects = entry.getValue().get();
+                if (!branchRejects.isEmpty())
+                    rejects.put(entry.getKey(), branchRejects);
+            }
+
+            return rejects;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking patches");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, List<String>> checkBranch(String branch, String commitId) throws IOException {
+        Map<String, List<String>> rejects = new TreeMap<>();
+
+        Map<String, RenameTracker.Rename> renames = RenameTracker.INSTANCE.read(RenameTracker.INSTANCE.getManifest(patchesDir, branch));
+
+        Map<String, byte[]> patches = PatchBundle.INSTANCE.readAll(patchesDir, branch, bundlePatches);
+
+        try (ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader);
+             ProgressReporter reporter = ProgressReporter.start(progress, "Checking patches for " + branch, "patches", patches.size())) {
+            RevCommit commit = revWalk.parseCommit(ObjectId.fromString(commitId));
+
+            for (Map.Entry<String, byte[]> patch : patches.entrySet()) {
+                reporter.step();
+                String path = patch.getKey().substring(0, patch.getKey().length() - ".patch".length());
+
+                // Moved files are patched against their original
+                String basePath = renames.containsKey(path) ? renames.get(path).getSource() : path;
+
+                List<String> baseLines = new ArrayList<>();
+                try (TreeWalk treeWalk = TreeWalk.forPath(reader, basePath, commit.getTree())) {
+                    if (treeWalk != null)
+                        baseLines = lines(reader.open(treeWalk.getObjectId(0)).getBytes());
+                }
+
+                PatchFile patchFile = PatchFile.fromLines(patch.getKey(), lines(patch.getValue()), true);
+                Patcher patcher = new Patcher(patchFile, baseLines);
+                patcher.patch(patchMode);
+
+                List<String> failed = patcher.getResults().stream()
+                        .filter(r -> !r.success)
+                        .map(r -> String.valueOf(r.patch))
+                        .collect(Collectors.toList());
+
+                if (!failed.isEmpty())
+                    rejects.put(path, failed);
+            }
+        }
+
+        logger.lifecycle("Checked patches for {}: {} files with rejects", branch, rejects.size());
+        return rejects;
+    }
+
+    /**
+     * Split file content into lines, the way DiffPatch reads files
+     */
+    static List<String> lines(byte[] data) {
+        String content = new String(data, StandardCharsets.UTF_8);
+        if (content.isEmpty())
+            return new ArrayList<>();
+
+        List<String> lines = new ArrayList<>(Arrays.asList(content.split("\r?\n", -1)));
+
+        // A trailing newline does not start a new line
+        if (lines.get(lines.size() - 1).isEmpty())
+            lines.remove(lines.size() - 1);
+
+        return lines;
+    }
+}
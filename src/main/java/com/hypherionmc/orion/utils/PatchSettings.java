@@ -0,0 +1,71 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import codechicken.diffpatch.util.PatchMode;
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * The porting settings of a single branch, resolved from the extension on the task thread.
+ * Applying and generating patches only needs these, so it can run in a worker without touching the project
+ */
+@Getter
+public class PatchSettings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String branch;
+    private final File rootDir;
+    private final File upstreamDir;
+    private final File workspaceDir;
+    private final File patchesDir;
+    private final File rejectsDir;
+    private final boolean bundlePatches;
+    private final PatchMode patchMode;
+    private final List<String> diffIgnore;
+    private final boolean useGitIgnore;
+    private final boolean detectRenames;
+    private final int renameScore;
+    private final String diffEngine;
+
+    private PatchSettings(OrionPortingExtension extension, String branch) {
+        this.branch = branch;
+        this.rootDir = extension.getProject().getRootDir();
+        this.upstreamDir = extension.getUpstreamDir();
+        this.workspaceDir = extension.getWorkspaceDir(branch);
+        this.patchesDir = extension.getPatchesDir();
+        this.rejectsDir = extension.getRejectsDir();
+        this.bundlePatches = extension.getBundlePatches().get();
+        this.patchMode = extension.getPatchMode().get();
+        this.diffIgnore = new ArrayList<>(extension.getDiffIgnore().get());
+        this.useGitIgnore = extension.getUseGitIgnore().get();
+        this.detectRenames = extension.getDetectRenames().get();
+        this.renameScore = extension.getRenameScore().get();
+        this.diffEngine = extension.getBranchDiffEngines().get().getOrDefault(branch, extension.getDiffEngine().get());
+    }
+
+    /**
+     * Resolve the settings of a porting branch
+     * @param extension The porting extension
+     * @param branch The porting branch
+     * @return The settings of the branch
+     */
+    public static PatchSettings of(OrionPortingExtension extension, String branch) {
+        return new PatchSettings(extension, branch);
+    }
+
+    public DiffIgnore getIgnore() {
+        return new DiffIgnore(diffIgnore, useGitIgnore);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import org.gradle.api.Project;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * @author HypherionSA
+ * Watches the working directories for changes, and regenerates the patches for changed files only
+ */
+public class PatchWatcher implements Closeable {
+
+    // Quiet period to wait for, before a burst of changes is processed
+    private static final long DEBOUNCE_MS = 200;
+
+    private final Project project;
+    private final OrionPortingExtension extension;
+    private final WatchService watchService;
+    private final DiffIgnore ignore;
+    private final FingerprintService fingerprints;
+    private final Map<WatchKey, WatchedDir> keys = new HashMap<>();
+
+    public PatchWatcher(Project project, OrionPortingExtension extension) throws IOException {
+        this.project = project;
+        this.extension = extension;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.ignore = DiffIgnore.of(extension);
+        this.fingerprints = FingerprintService.register(project).get();
+    }
+
+    /**
+     * Start watching all porting branches. This blocks until the build is cancelled
+     * @throws Exception Shit went wrong
+     */
+    public void watch() throws Exception {
+        for (String b : extension.getPortingBranches().get()) {
+            Path branchDir = workDir(b);
+            if (Files.isDirectory(branchDir))
+                register(b, branchDir, branchDir);
+        }
+
+        project.getLogger().lifecycle("Watching {} directories for changes", keys.size());
+
+        // Changed paths per branch. A null entry means the branch needs a full diff
+        Map<String, Set<String>> changed = new LinkedHashMap<>();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key = changed.isEmpty() ? watchService.take() : watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+            if (key == null) {
+                flush(changed);
+                changed.clear();
+                continue;
+            }
+
+            WatchedDir dir = keys.get(key);
+            if (dir == null) {
+                key.reset();
+                continue;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    changed.computeIfAbsent(dir.branch, k -> new HashSet<>()).add(null);
+                    continue;
+                }
+
+                Path child = dir.path.resolve((Path) event.context());
+                String relative = dir.root.relativize(child).toString().replace(File.separatorChar, '/');
+
+                if (ignore.isIgnored(dir.root, relative, Files.isDirectory(child)))
+                    continue;
+
+                Set<String> paths = changed.computeIfAbsent(dir.branch, k -> new HashSet<>());
+
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(child)) {
+                    // New directories need to be watched, and anything already inside them counts as added
+                    register(dir.branch, dir.root, child);
+                    paths.add(null);
+                    continue;
+                }
+
+                paths.add(relative);
+            }
+
+            if (!key.reset())
+                keys.remove(key);
+        }
+    }
+
+    /**
+     * Regenerate the patches for a batch of changed paths
+     * @param changed The changed paths per branch
+     */
+    private void flush(Map<String, Set<String>> changed) {
+        for (Map.Entry<String, Set<String>> entry : changed.entrySet()) {
+            long start = System.currentTimeMillis();
+
+            try {
+                boolean full = entry.getValue().contains(null);
+
+                if (!full) {
+                    for (String path : entry.getValue()) {
+                        // Skip saves that didn't change the content of the file
+                        Path file = workDir(entry.getKey()).resolve(path);
+                        if (Files.isRegularFile(file) && !fingerprints.hasContentChanged(file))
+                            continue;
+
+                        if (!Patcher.INSTANCE.generatePatch(project, entry.getKey(), path, extension)) {
+                            full = true;
+                            break;
+                        }
+                    }
+                }
+
+                if (full)
+                    Patcher.INSTANCE.generatePatches(project, entry.getKey(), extension);
+
+                project.getLogger().lifecycle("Updated patches for {} ({} files) in {}ms", entry.getKey(), full ? "all" : entry.getValue().size(), System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                project.getLogger().error("Failed to update patches for {}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private Path workDir(String branch) {
+        return extension.getWorkspaceDir(branch).toPath();
+    }
+
+    private void register(String branch, Path root, Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && ignore.isIgnored(root, root.relativize(dir).toString().replace(File.separatorChar, '/'), true))
+                    return FileVisitResult.SKIP_SUBTREE;
+
+                keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), new WatchedDir(branch, root, dir));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private static class WatchedDir {
+        private final String branch;
+        private final Path root;
+        private final Path path;
+
+        WatchedDir(String branch, Path root, Path path) {
+            this.branch = branch;
+            this.root = root;
+            this.path = path;
+        }
+    }
+}
@@ -7,29 +7,47 @@
 package com.hypherionmc.orion.utils;
 
 import codechicken.diffpatch.cli.CliOperation;
-import codechicken.diffpatch.cli.DiffOperation;
 import codechicken.diffpatch.cli.PatchOperation;
 import codechicken.diffpatch.util.LoggingOutputStream;
 import codechicken.diffpatch.util.PatchMode;
-import com.hypherionmc.orion.Constants;
+import codechicken.diffpatch.util.archiver.ArchiveFormat;
 import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import com.hypherionmc.orion.utils.diff.DiffEngine;
+import com.hypherionmc.orion.utils.diff.DiffEngines;
 import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 /**
  * @author HypherionSA
@@ -38,6 +56,11 @@ import java.util.List;
 public class Patcher {
 
     public static final Patcher INSTANCE = new Patcher();
+    private static final String REJECT_SUMMARY = ".rejects";
+
+    // Branches are patched and diffed concurrently by Gradle workers. Moved files are staged in the upstream
+    // directory while a branch is patched, so that branch needs exclusive access to it
+    private final ReadWriteLock upstreamLock = new ReentrantReadWriteLock();
 
     Patcher() {}
 
@@ -47,52 +70,103 @@ public class Patcher {
      * @param project The project the plugin is applied to
      * @param branch The branch to check out, if no commitId is specified
      * @param commitId Optional commit id, to check out a specific commit
+     * @param applyPatches Set up the working directories of all porting branches as well. With pipelined setup enabled,
+     *                     files are patched while they are extracted
      * @throws Exception Shit went wrong
      */
     public void checkoutUpstreamBranch(Project project, String branch, OrionPortingExtension extension, @Nullable String commitId, boolean applyPatches) throws Exception {
         // Get the repository info
-        Repository repository = new FileRepositoryBuilder().setGitDir(new File(project.getRootProject().getRootDir(), ".git")).build();
+        File upstream = extension.getUpstreamDir();
+        Repository repository = GitRepositoryService.getRepository(project);
         ObjectId devBranchId = repository.resolve(commitId == null ? branch : commitId);
 
         project.getLogger().lifecycle("Pulling from '{}' into upstream directory", branch);
 
-        // Checkout the branch into the upstream directory
-        RevWalk revWalk = new RevWalk(repository);
-        RevCommit commit = revWalk.parseCommit(devBranchId);
+        SnapshotCache snapshots = null;
+        if (extension.getSnapshotCache().get()) {
+            snapshots = new SnapshotCache(new File(project.getGradle().getGradleUserHomeDir(), "caches/orion/snapshots"), extension.getSnapshotCacheSize().get() * 1024L * 1024L, project.getLogger());
+        }
 
-        try (TreeWalk treeWalk = new TreeWalk(repository)) {
-            treeWalk.addTree(commit.getTree());
-            treeWalk.setRecursive(true);
+        boolean patched = false;
 
-            while (treeWalk.next()) {
-                String filePath = treeWalk.getPathString();
-                ObjectId objectId = treeWalk.getObjectId(0);
+        // Restore the upstream directory from the snapshot cache, if this commit was extracted before
+        if (snapshots != null && snapshots.restore(devBranchId.getName(), upstream.toPath())) {
+            project.getLogger().lifecycle("Restored {} from the snapshot cache", devBranchId.abbreviate(10).name());
+        } else {
+            SnapshotCache.Writer snapshot = snapshots != null ? snapshots.store(devBranchId.getName()) : null;
+
+            // Checkout the branch into the upstream directory
+            try (ObjectReader reader = repository.newObjectReader();
+                 RevWalk revWalk = new RevWalk(reader);
+                 TreeWalk treeWalk = new TreeWalk(reader);
+                 ProgressReporter progress = ProgressReporter.start(project, "Checking out " + branch, "files", 0);
+                 PipelinedSetup setup = applyPatches && extension.getPipelinedSetup().get() ? new PipelinedSetup(project, extension) : null) {
+                RevCommit commit = revWalk.parseCommit(devBranchId);
+
+                // Counting only reads the trees, so it is cheap compared to extracting the blobs
+                progress.setTotal(countFiles(reader, commit));
+
+                treeWalk.addTree(commit.getTree());
+                treeWalk.setRecursive(true);
+
+                while (treeWalk.next()) {
+                    String filePath = treeWalk.getPathString();
+                    ObjectId objectId = treeWalk.getObjectId(0);
+                    progress.step();
+
+                    File targetFile = new File(upstream, filePath);
+                    byte[] data = null;
+                    boolean written = false;
+                    try {
+                        ObjectLoader loader = reader.open(objectId);
+
+                        if (setup != null && loader.getSize() < PipelinedSetup.STREAM_THRESHOLD) {
+                            // The blob is read once, and shared between the upstream directory and the porting branches
+                            data = loader.getCachedBytes();
+                            writeBlob(data, targetFile);
+                        } else {
+                            writeBlob(loader, targetFile);
+                        }
+                        written = true;
+
+                        if (snapshot != null)
+                            snapshot.add(objectId.getName(), filePath, targetFile.toPath());
+                    } catch (IOException e) {
+                        project.getLogger().warn("Failed to fully parse commit {}", objectId, e);
+                    }
 
-                try {
-                    byte[] fileData = repository.open(objectId).getBytes();
+                    // Large blobs are read back from the upstream directory, only by branches that patch them
+                    if (setup != null && written) {
+                        if (data != null) {
+                            setup.accept(filePath, data);
+                        } else {
+                            setup.accept(filePath, targetFile);
+                        }
+                    }
+                }
 
-                    File targetFile = new File(repository.getWorkTree(), Constants.patcherUpstream + File.separator + filePath);
-                    targetFile.getParentFile().mkdirs();
-                    try (FileOutputStream fos = new FileOutputStream(targetFile)) {
-                        fos.write(fileData);
+                if (setup != null) {
+                    int rejected = setup.finish();
+                    for (String b : extension.getPortingBranches().get()) {
+                        writeRejectSummary(extension.getRejectsDir(), b);
                     }
-                } catch (IOException e) {
-                    project.getLogger().warn("Failed to fully parse commit {}", objectId, e);
+
+                    if (rejected != 0)
+                        project.getLogger().error("{} patches failed to apply. Fix the rejects and run reapplyRejects", rejected);
+                    patched = true;
                 }
             }
-        }
 
-        // Close the repository and RevWalk
-        repository.close();
-        revWalk.close();
+            if (snapshot != null)
+                snapshot.commit();
+        }
 
         // If this is a fresh pull, or update, write the commit hash for later retrieval
         if (commitId == null) {
-            FileUtils.write(Constants.patcherCommit, devBranchId.getName(), StandardCharsets.UTF_8);
-            repository.close();
+            FileUtils.write(extension.getCommitFile(), devBranchId.getName(), StandardCharsets.UTF_8);
         }
 
-        if (applyPatches) {
+        if (applyPatches && !patched) {
             // Apply Patches
             for (String b : extension.getPortingBranches().get()) {
                 applyPatches(project, b, extension);
@@ -100,38 +174,403 @@ public class Patcher {
         }
     }
 
+    private long countFiles(ObjectReader reader, RevCommit commit) throws IOException {
+        long count = 0;
+
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+
+            while (treeWalk.next()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
     /**
-     * Generate patches for changes between the upstream branch and working directory
+     * Replay the upstream commits between the stored commit ref and the upstream branch head, one at a time.
+     * Only the files changed by each commit are updated in the upstream and working directories, and only their
+     * patches are re-applied. Stops at the first commit that produces rejects
      * @param project The project the plugin is applied to
+     * @param extension The porting extension
      * @throws Exception Shit went wrong
      */
-    public void generatePatches(Project project, String workingDir) throws Exception {
-        DiffOperation.Builder builder = DiffOperation.builder()
-                .logTo(new LoggingOutputStream(project.getLogger(), LogLevel.LIFECYCLE))
-                .aPath(Constants.patcherUpstream)
-                .bPath(new File(project.getRootProject().getRootDir(), Constants.patcherWorkdir + File.separator + workingDir).toPath())
-                .outputPath(new File(project.getRootProject().getRootDir(), "patches/" + workingDir).toPath(), null)
-                .autoHeader(false)
-                .summary(true)
-                .aPrefix("a/")
-                .bPrefix("b/")
-                .lineEnding(System.lineSeparator());
+    public void portRange(Project project, OrionPortingExtension extension) throws Exception {
+        File upstream = extension.getUpstreamDir();
+        String startId = FileUtils.readFileToString(extension.getCommitFile(), StandardCharsets.UTF_8).trim();
+
+        Repository repository = GitRepositoryService.getRepository(project);
+
+        try (ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader);
+             ProgressReporter progress = ProgressReporter.start(project, "Porting " + extension.getUpstreamBranch().get(), "commits", 0)) {
 
-        String[] ignored = new String[] { ".idea", ".gradle" };
+            ObjectId headId = repository.resolve(extension.getUpstreamBranch().get());
+            if (headId == null)
+                throw new GradleException("Cannot resolve upstream branch " + extension.getUpstreamBranch().get());
 
-        for (String i : ignored) {
-            builder.ignorePrefix(i);
+            // The walk must be configured before it is started
+            revWalk.setFirstParent(true);
+            revWalk.sort(RevSort.TOPO);
+            revWalk.sort(RevSort.REVERSE, true);
+
+            RevCommit previous = revWalk.parseCommit(ObjectId.fromString(startId));
+            revWalk.markStart(revWalk.parseCommit(headId));
+            revWalk.markUninteresting(previous);
+
+            List<RevCommit> commits = new ArrayList<>();
+            revWalk.forEach(commits::add);
+
+            if (commits.isEmpty()) {
+                project.getLogger().lifecycle("Already up to date with '{}'", extension.getUpstreamBranch().get());
+                return;
+            }
+
+            project.getLogger().lifecycle("Porting {} commits from '{}'", commits.size(), extension.getUpstreamBranch().get());
+            progress.setTotal(commits.size());
+
+            for (RevCommit commit : commits) {
+                project.getLogger().lifecycle("Porting {} {}", commit.abbreviate(10).name(), commit.getShortMessage());
+
+                List<DiffEntry> changes;
+                try (TreeWalk treeWalk = new TreeWalk(reader)) {
+                    treeWalk.addTree(previous.getTree());
+                    treeWalk.addTree(commit.getTree());
+                    treeWalk.setRecursive(true);
+                    changes = DiffEntry.scan(treeWalk);
+                }
+
+                // Update the upstream directory with the commit delta
+                for (DiffEntry entry : changes) {
+                    if (entry.getChangeType() == DiffEntry.ChangeType.DELETE) {
+                        FileUtils.deleteQuietly(new File(upstream, entry.getOldPath()));
+                    }
+
+                    if (entry.getChangeType() != DiffEntry.ChangeType.DELETE) {
+                        writeBlob(reader, entry.getNewId().toObjectId(), new File(upstream, entry.getNewPath()));
+                    }
+                }
+
+                // Re-apply only the affected patches
+                boolean rejected = false;
+                for (String b : extension.getPortingBranches().get()) {
+                    Collection<RenameTracker.Rename> renames = RenameTracker.INSTANCE.read(RenameTracker.INSTANCE.getManifest(extension.getPatchesDir(), b)).values();
+
+                    try (PatchBundle.Reader bundle = openBundle(extension, b)) {
+                        for (DiffEntry entry : changes) {
+                            String path = entry.getChangeType() == DiffEntry.ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath();
+                            if (!applyPatch(project, b, path, extension, bundle))
+                                rejected = true;
+
+                            // Moved files follow changes to their original
+                            for (RenameTracker.Rename rename : renames) {
+                                if (rename.getSource().equals(path) && !applyPatch(project, b, rename.getTarget(), extension, bundle))
+                                    rejected = true;
+                            }
+                        }
+                    }
+                }
+
+                for (String b : extension.getPortingBranches().get()) {
+                    writeRejectSummary(extension.getRejectsDir(), b);
+                }
+
+                // The commit ref stays on the previous commit, so the next run replays this commit again
+                if (rejected) {
+                    throw new GradleException("Patches failed to apply after " + commit.abbreviate(10).name() + ". Fix the rejects, regenerate the patches and run portRange again");
+                }
+
+                FileUtils.write(extension.getCommitFile(), commit.getName(), StandardCharsets.UTF_8);
+                previous = commit;
+                progress.step();
+            }
         }
 
-        CliOperation.Result<DiffOperation.DiffSummary> result = builder.build().operate();
+        project.getLogger().lifecycle("Ported all commits successfully");
+    }
+
+    /**
+     * Update a single file in a working directory, from the upstream directory and its patch, if any
+     * @param project The project the plugin is applied to
+     * @param workingDir The porting branch to update
+     * @param path The repository relative path of the file
+     * @param extension The porting extension
+     * @param bundle The open patch bundle of the branch, or null if patches are not bundled
+     * @return False if the patch produced rejects
+     * @throws Exception Shit went wrong
+     */
+    private boolean applyPatch(Project project, String workingDir, String path, OrionPortingExtension extension, @Nullable PatchBundle.Reader bundle) throws Exception {
+        File base = new File(extension.getUpstreamDir(), path);
+        File patch = new File(extension.getPatchesDir(), workingDir + "/" + path + ".patch");
+        File out = new File(extension.getWorkspaceDir(workingDir), path);
+        File reject = new File(extension.getRejectsDir(), workingDir + "/" + path + ".patch");
+
+        FileUtils.deleteQuietly(reject);
+
+        // Moved files are patched against their original, and no longer exist at their original location
+        Map<String, RenameTracker.Rename> renames = RenameTracker.INSTANCE.read(RenameTracker.INSTANCE.getManifest(extension.getPatchesDir(), workingDir));
+        if (renames.containsKey(path))
+            base = new File(extension.getUpstreamDir(), renames.get(path).getSource());
+
+        if (renames.values().stream().anyMatch(r -> !r.isCopy() && r.getSource().equals(path))) {
+            FileUtils.deleteQuietly(out);
+            return true;
+        }
+
+        // Extract the single patch from the bundle, if patches are bundled
+        if (bundle != null) {
+            patch = new File(extension.getTmpDir(), "patches/" + workingDir + "/" + path + ".patch");
+            FileUtils.deleteQuietly(patch);
+
+            byte[] data = bundle.read(path + ".patch");
+            if (data != null)
+                FileUtils.writeByteArrayToFile(patch, data);
+        }
+
+        if (!patch.exists()) {
+            if (base.exists()) {
+                FileIO.INSTANCE.copy(base.toPath(), out.toPath(), true);
+            } else {
+                FileUtils.deleteQuietly(out);
+            }
+            return true;
+        }
+
+        PatchOperation.Builder builder = PatchOperation.builder()
+                .logTo(new LoggingOutputStream(project.getLogger(), LogLevel.LIFECYCLE))
+                .basePath(base.toPath())
+                .patchesPath(patch.toPath())
+                .outputPath(out.toPath())
+                .rejectsPath(reject.toPath())
+                .mode(extension.getPatchMode().get())
+                .level(codechicken.diffpatch.util.LogLevel.ERROR)
+                .lineEnding(System.lineSeparator());
+
+        CliOperation.Result<PatchOperation.PatchesSummary> result = builder.build().operate();
 
         int exit = result.exit;
         if (exit != 0 && exit != 1) {
             throw new RuntimeException("DiffPatch failed with exit code: " + exit);
-        } else {
-            project.getLogger().lifecycle("Generated Patches successfully");
-            cleanPatchesDir(new File("patches"));
         }
+        if (exit != 0) {
+            project.getLogger().error("Patch failed to apply for {} in {}", path, workingDir);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Open the patch bundle of a branch, so single patches can be read from it
+     * @return The open bundle, or null if patches are not bundled
+     */
+    @Nullable
+    private PatchBundle.Reader openBundle(OrionPortingExtension extension, String workingDir) throws IOException {
+        if (!extension.getBundlePatches().get())
+            return null;
+
+        return PatchBundle.INSTANCE.open(PatchBundle.INSTANCE.getBundle(extension.getPatchesDir(), workingDir));
+    }
+
+    /**
+     * Write a git blob to disk
+     * @param reader The object reader to load the blob from
+     * @param objectId The id of the blob
+     * @param targetFile The file to write to
+     * @throws IOException Failed to read or write the blob
+     */
+    private void writeBlob(ObjectReader reader, ObjectId objectId, File targetFile) throws IOException {
+        writeBlob(reader.open(objectId), targetFile);
+    }
+
+    /**
+     * Stream an opened git blob to disk, without loading it into memory
+     * @param loader The loader of the blob
+     * @param targetFile The file to write to
+     * @throws IOException Failed to read or write the blob
+     */
+    private void writeBlob(ObjectLoader loader, File targetFile) throws IOException {
+        targetFile.getParentFile().mkdirs();
+
+        // The file may be hard linked into the snapshot cache, so never write through it
+        Files.deleteIfExists(targetFile.toPath());
+        try (FileOutputStream fos = new FileOutputStream(targetFile)) {
+            loader.copyTo(fos);
+        }
+    }
+
+    /**
+     * Write an already loaded git blob to disk
+     * @param data The content of the blob
+     * @param targetFile The file to write to
+     * @throws IOException Failed to write the blob
+     */
+    private void writeBlob(byte[] data, File targetFile) throws IOException {
+        targetFile.getParentFile().mkdirs();
+
+        // The file may be hard linked into the snapshot cache, so never write through it
+        Files.deleteIfExists(targetFile.toPath());
+        Files.write(targetFile.toPath(), data);
+    }
+
+    /**
+     * Generate patches for changes between the upstream branch and working directory
+     * @param project The project the plugin is applied to
+     * @param workingDir The porting branch to generate patches for
+     * @param extension The porting extension
+     * @throws Exception Shit went wrong
+     */
+    public void generatePatches(Project project, String workingDir, OrionPortingExtension extension) throws Exception {
+        generatePatches(project, workingDir, extension.getWorkspaceDir(workingDir), extension);
+    }
+
+    /**
+     * Generate patches for changes between the upstream branch and a modified directory
+     * @param project The project the plugin is applied to
+     * @param workingDir The porting branch to generate patches for
+     * @param modifiedDir The directory containing the modified sources of the branch
+     * @param extension The porting extension
+     * @throws Exception Shit went wrong
+     */
+    public void generatePatches(Project project, String workingDir, File modifiedDir, OrionPortingExtension extension) throws Exception {
+        PatchSettings settings = PatchSettings.of(extension, workingDir);
+        Repository repository = settings.isDetectRenames() ? GitRepositoryService.getRepository(project) : null;
+        generatePatches(project.getLogger(), ProgressReporter.factory(project), repository, settings, modifiedDir);
+    }
+
+    /**
+     * Generate patches for changes between the upstream branch and a modified directory. Doesn't access the project,
+     * so it can run in a Gradle worker
+     * @param logger The logger to report to
+     * @param progress The progress logger factory, or null to run silently
+     * @param repository The git repository, used to detect moved files. Only needed when renames are detected
+     * @param settings The settings of the porting branch
+     * @param modifiedDir The directory containing the modified sources of the branch
+     * @throws Exception Shit went wrong
+     */
+    public void generatePatches(Logger logger, @Nullable ProgressLoggerFactory progress, @Nullable Repository repository, PatchSettings settings, File modifiedDir) throws Exception {
+        String workingDir = settings.getBranch();
+        File upstream = settings.getUpstreamDir();
+        File patches = new File(settings.getPatchesDir(), workingDir);
+
+        if (settings.isBundlePatches()) {
+            patches = PatchBundle.INSTANCE.getBundle(patches.getParentFile(), workingDir);
+            FileUtils.deleteQuietly(patches);
+        }
+
+        upstreamLock.readLock().lock();
+        try {
+            // Prune ignored directories, like build outputs, before the diff engine sees them
+            DiffIgnore ignore = settings.getIgnore();
+            Set<String> ignored = new TreeSet<>(ignore.collectIgnored(upstream.toPath()));
+            ignored.addAll(ignore.collectIgnored(modifiedDir.toPath()));
+
+            // Moved files are left out of the tree diff, and only get a patch for their content changes
+            List<RenameTracker.Rename> renames = new ArrayList<>();
+            if (settings.isDetectRenames()) {
+                renames = RenameTracker.INSTANCE.detect(Objects.requireNonNull(repository, "Rename detection needs the git repository"), upstream.toPath(), modifiedDir.toPath(), ignored, settings.getRenameScore());
+
+                for (RenameTracker.Rename rename : renames) {
+                    ignored.add(rename.getTarget());
+                    if (!rename.isCopy())
+                        ignored.add(rename.getSource());
+                }
+            }
+
+            DiffEngine engine = DiffEngines.INSTANCE.get(settings.getDiffEngine());
+            logger.info("Diffing {} with the {} engine", workingDir, engine.getName());
+            try (ProgressReporter reporter = ProgressReporter.start(progress, "Diffing " + workingDir, "files", 0)) {
+                engine.diffTree(logger, reporter, upstream.toPath(), modifiedDir.toPath(), ignored, patches, settings.isBundlePatches());
+            }
+
+            if (!renames.isEmpty()) {
+                logger.lifecycle("Detected {} moved files in {}", renames.size(), workingDir);
+                generateRenamePatches(logger, engine, renames, upstream, modifiedDir, patches, settings.isBundlePatches());
+            }
+            RenameTracker.INSTANCE.write(RenameTracker.INSTANCE.getManifest(settings.getPatchesDir(), workingDir), renames);
+        } finally {
+            upstreamLock.readLock().unlock();
+        }
+
+        logger.lifecycle("Generated Patches successfully");
+    }
+
+    /**
+     * Write the content patches of moved files, diffed against the original file
+     * @param logger The logger to report to
+     * @param engine The diff engine of the branch
+     * @param renames The detected renames
+     * @param upstream The upstream directory
+     * @param modifiedDir The directory containing the modified sources of the branch
+     * @param patches The patches directory, or the bundle file when bundled is true
+     * @param bundled If the patches are written as a zip bundle
+     * @throws Exception Shit went wrong
+     */
+    private void generateRenamePatches(Logger logger, DiffEngine engine, List<RenameTracker.Rename> renames, File upstream, File modifiedDir, File patches, boolean bundled) throws Exception {
+        File tree = patches;
+
+        // Bundles can't be appended to, so they are unpacked and packed again
+        if (bundled) {
+            tree = new File(patches.getAbsoluteFile().getParentFile(), patches.getName() + ".tmp");
+            FileUtils.deleteDirectory(tree);
+            if (patches.isFile())
+                PatchBundle.INSTANCE.unpack(patches, tree);
+        }
+
+        for (RenameTracker.Rename rename : renames) {
+            File patch = new File(tree, rename.getTarget() + ".patch");
+            FileUtils.deleteQuietly(patch);
+            engine.diffFile(logger, new File(upstream, rename.getSource()).toPath(), new File(modifiedDir, rename.getTarget()).toPath(), rename.getTarget(), patch);
+
+            if (patch.exists() && patch.length() == 0)
+                FileUtils.deleteQuietly(patch);
+        }
+
+        if (bundled) {
+            FileUtils.deleteQuietly(patches);
+            if (tree.isDirectory())
+                PatchBundle.INSTANCE.pack(tree, patches);
+            FileUtils.deleteDirectory(tree);
+        }
+    }
+
+    /**
+     * Regenerate the patch for a single file that was modified in a working directory
+     * @param project The project the plugin is applied to
+     * @param workingDir The porting branch the file belongs to
+     * @param path The repository relative path of the file
+     * @param extension The porting extension
+     * @return False if the file was added or removed, and the branch needs a full diff instead
+     * @throws Exception Shit went wrong
+     */
+    public boolean generatePatch(Project project, String workingDir, String path, OrionPortingExtension extension) throws Exception {
+        // Bundles cannot be updated in place
+        if (extension.getBundlePatches().get())
+            return false;
+
+        File base = new File(extension.getUpstreamDir(), path);
+        File modified = new File(extension.getWorkspaceDir(workingDir), path);
+
+        // Ignored files never have patches. Like a full diff, a file ignored in either tree is skipped
+        DiffIgnore ignore = DiffIgnore.of(extension);
+        if (ignore.isIgnored(extension.getUpstreamDir().toPath(), path, false) || ignore.isIgnored(extension.getWorkspaceDir(workingDir).toPath(), path, false))
+            return true;
+        File patch = new File(extension.getPatchesDir(), workingDir + "/" + path + ".patch");
+
+        if (!base.isFile() || !modified.isFile())
+            return false;
+
+        FileUtils.deleteQuietly(patch);
+
+        DiffEngines.INSTANCE.forBranch(extension, workingDir).diffFile(project.getLogger(), base.toPath(), modified.toPath(), path, patch);
+
+        // No changes left, so no patch is needed
+        if (patch.exists() && patch.length() == 0)
+            FileUtils.deleteQuietly(patch);
+
+        return true;
     }
 
     /**
@@ -140,80 +579,207 @@ public class Patcher {
      * @throws Exception Shit went wrong
      */
     public void applyPatches(Project project, String workingDir, OrionPortingExtension extension) throws Exception {
+        applyPatches(project.getLogger(), ProgressReporter.factory(project), PatchSettings.of(extension, workingDir));
+    }
+
+    /**
+     * Apply patches from the patches directory, into the working directory. Doesn't access the project,
+     * so it can run in a Gradle worker
+     * @param logger The logger to report to
+     * @param progress The progress logger factory, or null to run silently
+     * @param settings The settings of the porting branch
+     * @throws Exception Shit went wrong
+     */
+    public void applyPatches(Logger logger, @Nullable ProgressLoggerFactory progress, PatchSettings settings) throws Exception {
         // Working directories
-        File base = new File(project.getRootProject().getRootDir(), "upstream");
-        File patches = new File(project.getRootProject().getRootDir(), "patches/" + workingDir);
-        File out = new File(project.getRootProject().getRootDir(), Constants.patcherWorkdir + File.separator + workingDir);
-        File rejects = new File(project.getRootProject().getRootDir(), "rejects/" + workingDir);
+        String workingDir = settings.getBranch();
+        File base = settings.getUpstreamDir();
+        File patches = new File(settings.getPatchesDir(), workingDir);
+        File out = settings.getWorkspaceDir();
+        File rejects = new File(settings.getRejectsDir(), workingDir);
+        File patchesRoot = patches.getParentFile();
+
+        ArchiveFormat format = null;
+        if (settings.isBundlePatches()) {
+            patches = PatchBundle.INSTANCE.getBundle(patchesRoot, workingDir);
+            format = ArchiveFormat.ZIP;
+        }
+
+        Collection<RenameTracker.Rename> renames = RenameTracker.INSTANCE.read(RenameTracker.INSTANCE.getManifest(patchesRoot, workingDir)).values();
 
         // Check if any patches have been generated. If not, we copy the upstream folder to the dev folder
         if (!hasPatches(patches)) {
-            project.getLogger().lifecycle("Copying upstream branch into {} directory", workingDir);
-            FileUtils.copyDirectory(Constants.patcherUpstream.toFile(), out);
+            logger.lifecycle("Copying upstream branch into {} directory", workingDir);
+            upstreamLock.readLock().lock();
+            try {
+                FileIO.INSTANCE.copyDirectory(base.toPath(), out.toPath());
+            } finally {
+                upstreamLock.readLock().unlock();
+            }
+
+            // Files can still be moved without any content changes
+            for (RenameTracker.Rename rename : renames) {
+                FileIO.INSTANCE.copy(new File(out, rename.getSource()).toPath(), new File(out, rename.getTarget()).toPath(), true);
+                if (!rename.isCopy())
+                    FileUtils.deleteQuietly(new File(out, rename.getSource()));
+            }
             return;
         }
 
-        project.getLogger().lifecycle("Patching {}", workingDir);
+        logger.lifecycle("Patching {}", workingDir);
 
-        // Set up the patch operation
-        PatchOperation.Builder builder = PatchOperation.builder()
-                .logTo(new LoggingOutputStream(project.getLogger(), LogLevel.LIFECYCLE))
-                .basePath(base.toPath())
-                .patchesPath(patches.toPath())
-                .outputPath(out.toPath())
-                .rejectsPath(rejects.toPath())
-                .summary(true)
-                .mode(extension.getPatchMode().get())
-                .level(codechicken.diffpatch.util.LogLevel.ERROR)
-                .lineEnding(System.lineSeparator());
+        // Rejects of a previous run are stale once all patches are applied again
+        FileUtils.deleteDirectory(rejects);
 
-        builder.helpCallback(System.out::println);
+        // Moved files are staged in the shared upstream directory, so other branches must not read it meanwhile
+        Lock lock = renames.isEmpty() ? upstreamLock.readLock() : upstreamLock.writeLock();
+        lock.lock();
 
-        CliOperation.Result<PatchOperation.PatchesSummary> result = builder.build().operate();
+        // Stage the original of every moved file at its new location, so its patch applies against it
+        List<File> staged = new ArrayList<>();
+        CliOperation.Result<PatchOperation.PatchesSummary> result;
+        try {
+            for (RenameTracker.Rename rename : renames) {
+                File target = new File(base, rename.getTarget());
+                if (target.exists())
+                    continue;
+
+                FileIO.INSTANCE.copy(new File(base, rename.getSource()).toPath(), target.toPath(), true);
+                staged.add(target);
+            }
+
+            // Set up the patch operation
+            PatchOperation.Builder builder = PatchOperation.builder()
+                    .logTo(new LoggingOutputStream(logger, LogLevel.LIFECYCLE))
+                    .basePath(base.toPath())
+                    .patchesPath(patches.toPath(), format)
+                    .outputPath(out.toPath())
+                    .rejectsPath(rejects.toPath())
+                    .summary(true)
+                    .mode(settings.getPatchMode())
+                    .level(codechicken.diffpatch.util.LogLevel.ERROR)
+                    .lineEnding(System.lineSeparator());
+
+            builder.helpCallback(System.out::println);
+
+            // DiffPatch doesn't report per file progress, so the patch count and the elapsed time are shown until it finishes
+            ProgressReporter reporter = ProgressReporter.start(progress, "Patching " + workingDir, "files", PatchBundle.INSTANCE.count(patchesRoot, workingDir, settings.isBundlePatches()));
+            try {
+                result = builder.build().operate();
+            } finally {
+                reporter.close();
+            }
+        } finally {
+            for (File file : staged) {
+                FileUtils.deleteQuietly(file);
+            }
+            lock.unlock();
+        }
 
         int exit = result.exit;
         if (exit != 0 && exit != 1) {
             throw new RuntimeException("DiffPatch failed with exit code: " + exit);
         }
         if (exit != 0) {
-            project.getLogger().error("Patched failed to apply for {}", workingDir);
+            logger.error("Patched failed to apply for {}", workingDir);
+        }
+
+        // Moved files no longer exist at their original location
+        for (RenameTracker.Rename rename : renames) {
+            if (!rename.isCopy())
+                FileUtils.deleteQuietly(new File(out, rename.getSource()));
         }
 
-        project.getLogger().lifecycle("Applied Patches successfully");
+        writeRejectSummary(settings.getRejectsDir(), workingDir);
+        logger.lifecycle("Applied Patches successfully");
     }
 
     /**
-     * Helper method to check if the patches folder has any patches to apply
-     * @param patchesDir The directory containing the patches
-     * @return True if yes, False if no
+     * Re-apply only the patches that were rejected by the previous run, to the existing working directory.
+     * All other files of the working directory are left untouched
+     * @param project The project the plugin is applied to
+     * @param workingDir The porting branch to re-apply the rejects of
+     * @param extension The porting extension
+     * @return The number of patches that still have rejects
+     * @throws Exception Shit went wrong
      */
-    private boolean hasPatches(File patchesDir) {
-        if (patchesDir.exists()) {
-            File[] f = patchesDir.listFiles();
-            return f != null && f.length != 0;
+    public int reapplyRejects(Project project, String workingDir, OrionPortingExtension extension) throws Exception {
+        List<String> rejected = readRejectSummary(extension.getRejectsDir(), workingDir);
+        if (rejected.isEmpty())
+            return 0;
+
+        project.getLogger().lifecycle("Re-applying {} rejected patches for {}", rejected.size(), workingDir);
+
+        try (PatchBundle.Reader bundle = openBundle(extension, workingDir)) {
+            for (String path : rejected) {
+                applyPatch(project, workingDir, path, extension, bundle);
+            }
         }
 
-        return false;
+        return writeRejectSummary(extension.getRejectsDir(), workingDir).size();
     }
 
-    private void cleanPatchesDir(File dir) {
-        List<String> ignored = Arrays.asList(".idea", ".gradle", "build", "artifacts");
+    /**
+     * Record the files that have rejects for a working directory, so they can be re-applied later
+     * @param rejectsDir The rejects directory of all branches
+     * @param workingDir The porting branch
+     * @return The repository relative paths of the files with rejects
+     * @throws IOException Failed to read the rejects, or write the summary
+     */
+    private List<String> writeRejectSummary(File rejectsDir, String workingDir) throws IOException {
+        File rejects = new File(rejectsDir, workingDir);
+        File summary = new File(rejectsDir, workingDir + REJECT_SUMMARY);
+
+        List<String> rejected = new ArrayList<>();
+        if (rejects.isDirectory()) {
+            Path root = rejects.toPath();
+            try (Stream<Path> stream = Files.walk(root)) {
+                stream.filter(Files::isRegularFile)
+                        .map(p -> root.relativize(p).toString().replace(File.separatorChar, '/'))
+                        .filter(p -> p.endsWith(".patch"))
+                        .map(p -> p.substring(0, p.length() - ".patch".length()))
+                        .sorted()
+                        .forEach(rejected::add);
+            }
+        }
 
-        File[] files = dir.listFiles();
-        if (files == null)
-            return;
+        if (rejected.isEmpty()) {
+            FileUtils.deleteQuietly(summary);
+        } else {
+            FileUtils.writeLines(summary, StandardCharsets.UTF_8.name(), rejected, "\n");
+        }
 
-        for (File f : files) {
-            if (f.isDirectory()) {
-                cleanPatchesDir(f);
-                continue;
-            }
+        return rejected;
+    }
+
+    private List<String> readRejectSummary(File rejectsDir, String workingDir) throws IOException {
+        File summary = new File(rejectsDir, workingDir + REJECT_SUMMARY);
+        if (!summary.isFile())
+            return new ArrayList<>();
+
+        List<String> rejected = new ArrayList<>();
+        for (String line : FileUtils.readLines(summary, StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty())
+                rejected.add(line.trim());
+        }
+
+        return rejected;
+    }
 
-            if (ignored.contains(f.getName()))
-                FileUtils.deleteQuietly(f);
+    /**
+     * Helper method to check if the patches folder has any patches to apply
+     * @param patchesDir The directory or bundle containing the patches
+     * @return True if yes, False if no
+     */
+    private boolean hasPatches(File patchesDir) {
+        if (patchesDir.isFile())
+            return patchesDir.length() != 0;
+
+        if (patchesDir.exists()) {
+            File[] f = patchesDir.listFiles();
+            return f != null && f.length != 0;
         }
 
-        if (ignored.contains(dir.getName()))
-            FileUtils.deleteQuietly(dir);
+        return false;
     }
 }
@@ -0,0 +1,315 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import codechicken.diffpatch.patch.Patcher;
+import codechicken.diffpatch.util.PatchFile;
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Project;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * @author HypherionSA
+ * Sets up the working directories of all porting branches while the upstream commit is being extracted.
+ * Each extracted file is patched in memory and written to every branch straight away, so extraction,
+ * patching and writing overlap, instead of patching every branch against the finished upstream tree.
+ * Files over {@link #STREAM_THRESHOLD} are not held in memory, but read back from the upstream directory
+ */
+public class PipelinedSetup implements AutoCloseable {
+
+    // Bytes of the files queued for patching and writing. Bounds the memory held by extracted blobs
+    private static final int MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Blobs of at least this size are written to the upstream directory first, and queued by their file
+     */
+    public static final long STREAM_THRESHOLD = 4 * 1024 * 1024;
+
+    private final Project project;
+    private final OrionPortingExtension extension;
+    private final List<Branch> branches = new ArrayList<>();
+    private final Semaphore pending = new Semaphore(MAX_PENDING_BYTES);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final ExecutorService executor;
+
+    public PipelinedSetup(Project project, OrionPortingExtension extension) throws IOException {
+        this.project = project;
+        this.extension = extension;
+
+        for (String b : extension.getPortingBranches().get()) {
+            branches.add(new Branch(b));
+        }
+
+        // The extracting thread already holds one of the build's workers
+        int workers = Math.max(1, project.getGradle().getStartParameter().getMaxWorkerCount() - 1);
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "orion-setup-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queue an extracted upstream file for all porting branches. Returns as soon as the file is queued
+     * @param path The repository relative path of the file
+     * @param data The content of the file
+     * @throws IOException A previously queued file failed, or the thread was interrupted
+     */
+    public void accept(String path, byte[] data) throws IOException {
+        accept(path, new Source(data, null));
+    }
+
+    /**
+     * Queue an extracted upstream file for all porting branches, without holding it in memory.
+     * The file is only read once a branch has a patch for it, and copied otherwise
+     * @param path The repository relative path of the file
+     * @param file The extracted file. It must not change until {@link #finish()} returns
+     * @throws IOException A previously queued file failed, or the thread was interrupted
+     */
+    public void accept(String path, File file) throws IOException {
+        accept(path, new Source(null, file));
+    }
+
+    private void accept(String path, Source source) throws IOException {
+        rethrow();
+
+        List<Job> jobs = new ArrayList<>();
+        for (Branch branch : branches) {
+            // Moved files no longer exist at their original location
+            if (!branch.moved.contains(path))
+                jobs.add(new Job(branch, path));
+
+            // Moved files are patched against their original
+            for (RenameTracker.Rename rename : branch.renames.getOrDefault(path, Collections.emptyList())) {
+                jobs.add(new Job(branch, rename.getTarget()));
+            }
+        }
+
+        submit(jobs, source);
+    }
+
+    /**
+     * Apply the patches of new files, and wait for all queued files to be written
+     * @return The number of patches with rejects, over all branches
+     * @throws IOException Failed to patch or write a file
+     */
+    public int finish() throws IOException {
+        for (Branch branch : branches) {
+            for (String name : branch.patches.keySet()) {
+                if (branch.applied.contains(name))
+                    continue;
+
+                // Patches without a base in upstream create new files
+                String path = name.substring(0, name.length() - ".patch".length());
+                if (!branch.moved.contains(path))
+                    submit(Collections.singletonList(new Job(branch, path)), new Source(null, null));
+            }
+        }
+
+        try {
+            pending.acquire(MAX_PENDING_BYTES);
+            pending.release(MAX_PENDING_BYTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the workspace setup");
+        }
+
+        rethrow();
+
+        int rejected = 0;
+        for (Branch branch : branches) {
+            project.getLogger().lifecycle("Set up {}: {} patches, {} with rejects", branch.name, branch.patches.size(), branch.rejected.get());
+            rejected += branch.rejected.get();
+        }
+        return rejected;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void submit(List<Job> jobs, Source source) throws IOException {
+        if (jobs.isEmpty())
+            return;
+
+        for (Job job : jobs) {
+            job.patch = job.branch.patches.get(job.path + ".patch");
+            if (job.patch != null)
+                job.branch.applied.add(job.path + ".patch");
+        }
+
+        // The content is shared by all branches, so it only counts once. Empty files still take a permit
+        int permits = (int) Math.max(1, Math.min(source.size(), MAX_PENDING_BYTES));
+        try {
+            pending.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing " + jobs.get(0).path);
+        }
+
+        AtomicInteger remaining = new AtomicInteger(jobs.size());
+        for (Job job : jobs) {
+            executor.execute(() -> {
+                try {
+                    if (job.patch != null) {
+                        patch(job.branch, job.path, source.read(), job.patch);
+                    } else if (source.file != null) {
+                        FileIO.INSTANCE.copy(source.file.toPath(), new File(job.branch.output, job.path).toPath(), false);
+                    } else {
+                        write(new File(job.branch.output, job.path), source.data);
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    if (remaining.decrementAndGet() == 0)
+                        pending.release(permits);
+                }
+            });
+        }
+    }
+
+    private void patch(Branch branch, String path, @Nullable byte[] data, byte[] patch) throws IOException {
+        PatchFile patchFile = PatchFile.fromLines(path + ".patch", PatchChecker.lines(patch), true);
+        Patcher patcher = new Patcher(patchFile, data == null ? new ArrayList<>() : PatchChecker.lines(data));
+        patcher.patch(extension.getPatchMode().get());
+
+        List<Patcher.Result> failed = patcher.getResults().stream().filter(r -> !r.success).collect(Collectors.toList());
+        if (!failed.isEmpty()) {
+            StringBuilder builder = new StringBuilder();
+            builder.append("--- a/").append(path).append('\n').append("+++ b/").append(path).append('\n');
+            failed.forEach(r -> builder.append(r.patch).append('\n'));
+
+            write(new File(branch.rejects, path + ".patch"), builder.toString().getBytes(StandardCharsets.UTF_8));
+            branch.rejected.incrementAndGet();
+            project.getLogger().error("Patch failed to apply for {} in {}", path, branch.name);
+        }
+
+        // Patches can also delete a file
+        if (patchFile.patchedPath != null && patchFile.patchedPath.endsWith("/dev/null"))
+            return;
+
+        StringBuilder builder = new StringBuilder();
+        for (String line : patcher.lines) {
+            builder.append(line).append(System.lineSeparator());
+        }
+        write(new File(branch.output, path), builder.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        Files.write(file.toPath(), data);
+    }
+
+    private void rethrow() throws IOException {
+        Throwable t = failure.get();
+        if (t == null)
+            return;
+
+        if (t instanceof IOException)
+            throw (IOException) t;
+        if (t instanceof UncheckedIOException)
+            throw ((UncheckedIOException) t).getCause();
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        throw new RuntimeException(t);
+    }
+
+    /**
+     * The content of an extracted file, either in memory or in the upstream directory. Neither for new files
+     */
+    private static class Source {
+        @Nullable
+        private final byte[] data;
+        @Nullable
+        private final File file;
+
+        Source(@Nullable byte[] data, @Nullable File file) {
+            this.data = data;
+            this.file = file;
+        }
+
+        long size() {
+            if (data != null)
+                return data.length;
+            return file != null ? file.length() : 0;
+        }
+
+        @Nullable
+        byte[] read() throws IOException {
+            if (data != null)
+                return data;
+            return file != null ? Files.readAllBytes(file.toPath()) : null;
+        }
+    }
+
+    /**
+     * A file to write to a single branch, and its patch if it has one
+     */
+    private static class Job {
+        private final Branch branch;
+        private final String path;
+        @Nullable
+        private byte[] patch;
+
+        Job(Branch branch, String path) {
+            this.branch = branch;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Patches and renames of a single porting branch
+     */
+    private class Branch {
+        private final String name;
+        private final File output;
+        private final File rejects;
+        private final Map<String, byte[]> patches;
+
+        // Renames keyed by their original, and the originals that no longer exist
+        private final Map<String, List<RenameTracker.Rename>> renames = new HashMap<>();
+        private final Set<String> moved = new HashSet<>();
+
+        // Only touched by the extracting thread
+        private final Set<String> applied = new HashSet<>();
+        private final AtomicInteger rejected = new AtomicInteger();
+
+        Branch(String name) throws IOException {
+            this.name = name;
+            this.output = extension.getWorkspaceDir(name);
+            this.rejects = new File(extension.getRejectsDir(), name);
+            this.patches = PatchBundle.INSTANCE.readAll(extension.getPatchesDir(), name, extension.getBundlePatches().get());
+
+            // Rejects of a previous run are stale once all patches are applied again
+            FileUtils.deleteDirectory(rejects);
+
+            for (RenameTracker.Rename rename : RenameTracker.INSTANCE.read(RenameTracker.INSTANCE.getManifest(extension.getPatchesDir(), name)).values()) {
+                renames.computeIfAbsent(rename.getSource(), s -> new ArrayList<>()).add(rename);
+                if (!rename.isCopy())
+                    moved.add(rename.getSource());
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.gradle.api.Project;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.internal.logging.progress.ProgressLogger;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author HypherionSA
+ * Reports the progress of a long running operation in Gradle's status bar, with a rolling throughput and an ETA.
+ * Counting a step is a single atomic increment. The status line is refreshed from a background thread,
+ * so nothing is written to the console per file
+ */
+public class ProgressReporter implements AutoCloseable {
+
+    private static final long REFRESH_MILLIS = 500;
+    private static final double SMOOTHING = 0.3;
+
+    private static final ScheduledExecutorService REFRESHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "orion-progress");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Nullable
+    private final ProgressLogger logger;
+    private final String unit;
+    private final AtomicLong done = new AtomicLong();
+    private final long started = System.nanoTime();
+    private volatile long total;
+
+    // Only touched by the refresher thread
+    private long lastDone = 0;
+    private long lastTime = started;
+    private double rate = -1;
+
+    // Cancelling the refresh does not stop a run that is already waiting for the lock
+    private boolean closed = false;
+
+    @Nullable
+    private final ScheduledFuture<?> refresh;
+
+    /**
+     * @param refresher The executor that refreshes the status line, or null to only refresh when {@link #refresh()} is called
+     */
+    ProgressReporter(@Nullable ProgressLogger logger, String unit, long total, @Nullable ScheduledExecutorService refresher) {
+        this.logger = logger;
+        this.unit = unit;
+        this.total = total;
+        this.refresh = logger != null && refresher != null ? refresher.scheduleAtFixedRate(this::refresh, REFRESH_MILLIS, REFRESH_MILLIS, TimeUnit.MILLISECONDS) : null;
+    }
+
+    /**
+     * Start reporting a new operation
+     * @param project The project the operation runs for
+     * @param description The name of the operation, for example "Patching 1.20.1"
+     * @param unit What is being counted, for example "files"
+     * @param total The number of steps, or 0 if it is not known
+     * @return The reporter. Must be closed when the operation finishes
+     */
+    public static ProgressReporter start(Project project, String description, String unit, long total) {
+        return start(factory(project), description, unit, total);
+    }
+
+    /**
+     * Start reporting a new operation, away from the project
+     * @param factory The progress logger factory of the build, or null to run silently
+     * @param description The name of the operation, for example "Patching 1.20.1"
+     * @param unit What is being counted, for example "files"
+     * @param total The number of steps, or 0 if it is not known
+     * @return The reporter. Must be closed when the operation finishes
+     */
+    public static ProgressReporter start(@Nullable ProgressLoggerFactory factory, String description, String unit, long total) {
+        ProgressLogger logger = null;
+
+        if (factory != null) {
+            logger = factory.newOperation(ProgressReporter.class);
+            logger.setDescription(description);
+            logger.started();
+        }
+
+        return new ProgressReporter(logger, unit, total, REFRESHER);
+    }
+
+    /**
+     * Get the progress logger factory of the build. Gradle workers can't access it, so their operations run silently
+     * @param project The project the plugin is applied to
+     * @return The factory, or null if progress logging is not available
+     */
+    @Nullable
+    public static ProgressLoggerFactory factory(Project project) {
+        // Progress logging is internal to Gradle. Without it, the operation just runs silently
+        try {
+            return ((ProjectInternal) project).getServices().get(ProgressLoggerFactory.class);
+        } catch (Throwable t) {
+            project.getLogger().debug("Progress reporting is not available", t);
+            return null;
+        }
+    }
+
+    public void step() {
+        done.incrementAndGet();
+    }
+
+    public void step(long count) {
+        done.addAndGet(count);
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    synchronized void refresh() {
+        if (logger == null || closed)
+            return;
+
+        long now = System.nanoTime();
+        long current = done.get();
+
+        double sample = (current - lastDone) / ((now - lastTime) / 1e9);
+        rate = rate < 0 ? sample : SMOOTHING * sample + (1 - SMOOTHING) * rate;
+        lastDone = current;
+        lastTime = now;
+
+        StringBuilder status = new StringBuilder();
+        if (total > 0) {
+            status.append(current).append('/').append(total).append(' ').append(unit);
+            if (current == 0)
+                status.append(", ").append(formatSeconds((now - started) / 1_000_000_000L)).append(" elapsed");
+        } else if (current > 0) {
+            status.append(current).append(' ').append(unit);
+        } else {
+            status.append(formatSeconds((now - started) / 1_000_000_000L)).append(" elapsed");
+        }
+
+        if (current > 0) {
+            status.append(", ").append(Math.round(rate)).append(' ').append(unit).append("/s");
+
+            if (total > current && rate > 0)
+                status.append(", ETA ").append(formatSeconds(Math.round((total - current) / rate)));
+        }
+
+        logger.progress(status.toString());
+    }
+
+    @Override
+    public void close() {
+        if (logger == null)
+            return;
+
+        if (refresh != null)
+            refresh.cancel(false);
+        synchronized (this) {
+            if (closed)
+                return;
+
+            closed = true;
+            logger.completed();
+        }
+    }
+
+    private static String formatSeconds(long seconds) {
+        if (seconds < 60)
+            return seconds + "s";
+
+        return (seconds / 60) + "m " + (seconds % 60) + "s";
+    }
+}
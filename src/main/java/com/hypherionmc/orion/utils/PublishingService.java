@@ -0,0 +1,187 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import okhttp3.*;
+import org.gradle.api.Project;
+import org.gradle.api.credentials.PasswordCredentials;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Checks which artifacts are already published, by comparing their checksums with the checksum files in the repository.
+ * Only these checksum requests go through the client here. Uploads are done by Gradle's publish tasks, which are
+ * limited by sharing this service with a bounded number of parallel usages.
+ * A publication is skipped or uploaded as a whole, since Gradle publishes its artifacts, POM and metadata together.
+ * Its artifacts are uploaded one after another, and separate publications upload concurrently with --parallel
+ */
+public abstract class PublishingService implements BuildService<PublishingService.Params>, AutoCloseable {
+
+    public static final String NAME = "orionPublishing";
+    private static final Logger LOGGER = Logging.getLogger(PublishingService.class);
+
+    private final OkHttpClient client;
+
+    public interface Params extends BuildServiceParameters {
+        Property<Integer> getConnections();
+    }
+
+    public PublishingService() {
+        int connections = getParameters().getConnections().get();
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(connections);
+        dispatcher.setMaxRequestsPerHost(connections);
+
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(connections, 5, TimeUnit.MINUTES))
+                .build();
+    }
+
+    /**
+     * Register the service for the build, if it is not registered already
+     * @param project The project the plugin is applied to
+     * @param connections The maximum number of concurrent checksum requests, and of publish tasks running at once
+     * @return The service provider
+     */
+    public static Provider<PublishingService> register(Project project, int connections) {
+        return project.getGradle().getSharedServices().registerIfAbsent(NAME, PublishingService.class, spec -> {
+            spec.getParameters().getConnections().set(connections);
+            spec.getMaxParallelUsages().set(connections);
+        });
+    }
+
+    /**
+     * Check if all artifacts are already published with the same content. All checksums are requested concurrently.
+     * The SHA-256 checksum is preferred, and the SHA-1 checksum is only requested when the repository has none
+     * @param repository The base url of the maven repository
+     * @param credentials Optional credentials for the repository
+     * @param artifacts The local artifacts, keyed by their path in the repository
+     * @param fingerprints The fingerprint cache, holding the SHA-1 of the artifacts
+     * @return True if every artifact exists in the repository with the same checksum
+     */
+    public boolean isPublished(URI repository, @Nullable PasswordCredentials credentials, Map<String, File> artifacts, FingerprintService fingerprints) {
+        String base = repository.toString().endsWith("/") ? repository.toString() : repository + "/";
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>();
+
+        for (Map.Entry<String, File> artifact : artifacts.entrySet()) {
+            String url = base + artifact.getKey();
+            File file = artifact.getValue();
+
+            checks.add(fetchChecksum(url + ".sha256", credentials).thenCompose(sha256 -> {
+                if (sha256 != null)
+                    return CompletableFuture.completedFuture(matches(sha256, file, "SHA-256", () -> sha256(file)));
+
+                return fetchChecksum(url + ".sha1", credentials).thenApply(sha1 -> sha1 != null && matches(sha1, file, "SHA-1", () -> fingerprints.getHash(file.toPath())));
+            }));
+        }
+
+        return checks.stream().allMatch(CompletableFuture::join);
+    }
+
+    /**
+     * Request a checksum file from the repository
+     * @param url The url of the checksum file
+     * @param credentials Optional credentials for the repository
+     * @return The checksum, or null if the repository doesn't have it
+     */
+    private CompletableFuture<String> fetchChecksum(String url, @Nullable PasswordCredentials credentials) {
+        Request.Builder request = new Request.Builder().url(url).get();
+        if (credentials != null && credentials.getUsername() != null && credentials.getPassword() != null)
+            request.header("Authorization", Credentials.basic(credentials.getUsername(), credentials.getPassword()));
+
+        CompletableFuture<String> checksum = new CompletableFuture<>();
+        client.newCall(request.build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                LOGGER.info("Failed to fetch checksum {}", url, e);
+                checksum.complete(null);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+                try (ResponseBody body = response.body()) {
+                    if (!response.isSuccessful() || body == null) {
+                        checksum.complete(null);
+                        return;
+                    }
+
+                    // Some repositories append the file name to the checksum
+                    String[] remote = body.string().trim().split("\\s+");
+                    checksum.complete(remote.length > 0 && !remote[0].isEmpty() ? remote[0] : null);
+                }
+            }
+        });
+        return checksum;
+    }
+
+    private static boolean matches(String remote, File file, String algorithm, HashFunction hash) {
+        try {
+            return remote.equalsIgnoreCase(toHex(hash.hash()));
+        } catch (IOException e) {
+            LOGGER.info("Failed to compute the {} of {}", algorithm, file, e);
+            return false;
+        }
+    }
+
+    private static byte[] sha256(File file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+
+            try (InputStream is = Files.newInputStream(file.toPath())) {
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    private interface HashFunction {
+        byte[] hash() throws IOException;
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder builder = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
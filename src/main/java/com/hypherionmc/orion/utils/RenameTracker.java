@@ -0,0 +1,179 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.diff.ContentSource;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * @author HypherionSA
+ * Detects files that were moved or copied between the upstream and a porting branch, based on content similarity.
+ * Moved files are recorded in a rename manifest next to the patches, so their patches only have to contain the
+ * actual content changes, instead of deleting and re-adding the whole file
+ */
+public class RenameTracker {
+
+    public static final RenameTracker INSTANCE = new RenameTracker();
+    public static final String EXTENSION = ".renames";
+
+    RenameTracker() {}
+
+    /**
+     * Find the files that were renamed or copied from the base directory into the modified directory
+     * @param repository The repository, used for the rename detection config
+     * @param base The unmodified directory
+     * @param modified The modified directory
+     * @param ignored Path prefixes that are never diffed
+     * @param score The minimum similarity, in percent, for two files to be considered a rename
+     * @return The detected renames and copies
+     * @throws IOException Failed to read the files
+     */
+    public List<Rename> detect(Repository repository, Path base, Path modified, Set<String> ignored, int score) throws IOException {
+        Set<String> baseFiles = DiffIgnore.listFiles(base, ignored);
+        Set<String> modifiedFiles = DiffIgnore.listFiles(modified, ignored);
+
+        RenameDetector detector = new RenameDetector(repository);
+        detector.setRenameScore(score);
+
+        ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+        for (String path : baseFiles) {
+            if (!modifiedFiles.contains(path))
+                detector.add(new FileEntry(DiffEntry.ChangeType.DELETE, path, formatter.idFor(Constants.OBJ_BLOB, Files.readAllBytes(base.resolve(path)))));
+        }
+
+        for (String path : modifiedFiles) {
+            if (!baseFiles.contains(path))
+                detector.add(new FileEntry(DiffEntry.ChangeType.ADD, path, formatter.idFor(Constants.OBJ_BLOB, Files.readAllBytes(modified.resolve(path)))));
+        }
+
+        List<Rename> renames = new ArrayList<>();
+        for (DiffEntry entry : detector.compute(new ContentSource.Pair(new FileContentSource(base), new FileContentSource(modified)), NullProgressMonitor.INSTANCE)) {
+            if (entry.getChangeType() == DiffEntry.ChangeType.RENAME || entry.getChangeType() == DiffEntry.ChangeType.COPY)
+                renames.add(new Rename(entry.getOldPath(), entry.getNewPath(), entry.getChangeType() == DiffEntry.ChangeType.COPY));
+        }
+
+        renames.sort(Comparator.comparing(Rename::getTarget));
+        return renames;
+    }
+
+    /**
+     * Get the rename manifest for a porting branch
+     * @param patchesDir The root patches directory
+     * @param branch The porting branch
+     * @return The manifest file. It may not exist
+     */
+    public File getManifest(File patchesDir, String branch) {
+        return new File(patchesDir, branch + EXTENSION);
+    }
+
+    /**
+     * Write a rename manifest. The manifest is removed when there are no renames
+     * @param manifest The manifest file
+     * @param renames The renames to record
+     * @throws IOException Failed to write the manifest
+     */
+    public void write(File manifest, List<Rename> renames) throws IOException {
+        if (renames.isEmpty()) {
+            FileUtils.deleteQuietly(manifest);
+            return;
+        }
+
+        List<String> lines = renames.stream()
+                .map(r -> (r.isCopy() ? "C" : "R") + "\t" + r.getSource() + "\t" + r.getTarget())
+                .collect(Collectors.toList());
+
+        FileUtils.writeLines(manifest, StandardCharsets.UTF_8.name(), lines, "\n");
+    }
+
+    /**
+     * Read a rename manifest
+     * @param manifest The manifest file
+     * @return The recorded renames, keyed by their target path. Empty if the manifest does not exist
+     * @throws IOException Failed to read the manifest
+     */
+    public Map<String, Rename> read(File manifest) throws IOException {
+        Map<String, Rename> renames = new LinkedHashMap<>();
+        if (!manifest.isFile())
+            return renames;
+
+        for (String line : FileUtils.readLines(manifest, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            if (parts.length != 3)
+                continue;
+
+            renames.put(parts[2], new Rename(parts[1], parts[2], parts[0].equals("C")));
+        }
+
+        return renames;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Rename {
+        private final String source;
+        private final String target;
+        private final boolean copy;
+    }
+
+    /**
+     * An added or deleted file. JGit only exposes these factories inside its own package
+     */
+    private static class FileEntry extends DiffEntry {
+        FileEntry(ChangeType changeType, String path, ObjectId id) {
+            boolean added = changeType == ChangeType.ADD;
+
+            this.changeType = changeType;
+            this.oldPath = added ? DEV_NULL : path;
+            this.newPath = added ? path : DEV_NULL;
+            this.oldMode = added ? FileMode.MISSING : FileMode.REGULAR_FILE;
+            this.newMode = added ? FileMode.REGULAR_FILE : FileMode.MISSING;
+            this.oldId = AbbreviatedObjectId.fromObjectId(added ? ObjectId.zeroId() : id);
+            this.newId = AbbreviatedObjectId.fromObjectId(added ? id : ObjectId.zeroId());
+        }
+    }
+
+    /**
+     * Serves file contents for rename detection straight from a directory
+     */
+    private static class FileContentSource extends ContentSource {
+        private final Path root;
+
+        FileContentSource(Path root) {
+            this.root = root;
+        }
+
+        @Override
+        public long size(String path, ObjectId id) throws IOException {
+            return Files.size(root.resolve(path));
+        }
+
+        @Override
+        public ObjectLoader open(String path, ObjectId id) throws IOException {
+            return new ObjectLoader.SmallObject(Constants.OBJ_BLOB, Files.readAllBytes(root.resolve(path)));
+        }
+    }
+}
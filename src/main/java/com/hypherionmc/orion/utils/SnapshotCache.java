@@ -0,0 +1,256 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.gradle.api.logging.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author HypherionSA
+ * Content addressed cache of extracted upstream commits, stored in the Gradle user home.
+ * Files are stored once per git blob id, and every cached commit has a manifest mapping paths to blobs.
+ * Restoring a commit hard links the blobs into place where possible, and falls back to copying them
+ */
+public class SnapshotCache {
+
+    // Unreferenced objects younger than this may belong to a snapshot that is still being written
+    private static final long ORPHAN_AGE_MS = 60 * 60 * 1000L;
+
+    private final Path objectsDir;
+    private final Path commitsDir;
+    private final long maxSize;
+    private final Logger logger;
+    private final boolean hardLinks;
+
+    public SnapshotCache(File cacheDir, long maxSize, Logger logger) {
+        this(cacheDir, maxSize, logger, true);
+    }
+
+    SnapshotCache(File cacheDir, long maxSize, Logger logger, boolean hardLinks) {
+        this.objectsDir = cacheDir.toPath().resolve("objects");
+        this.commitsDir = cacheDir.toPath().resolve("commits");
+        this.maxSize = maxSize;
+        this.logger = logger;
+        this.hardLinks = hardLinks;
+    }
+
+    /**
+     * Restore a cached commit into a directory
+     * @param commitId The commit to restore
+     * @param target The directory to restore into
+     * @return False if the commit is not cached, or could not be restored
+     */
+    public boolean restore(String commitId, Path target) {
+        Path manifest = commitsDir.resolve(commitId);
+        if (!Files.isRegularFile(manifest))
+            return false;
+
+        try {
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                int split = line.indexOf(' ');
+                Path object = objectPath(line.substring(0, split));
+                Path file = target.resolve(line.substring(split + 1));
+
+                Files.createDirectories(file.getParent());
+                linkOrCopy(object, file);
+            }
+
+            // Mark the snapshot as recently used
+            Files.setLastModifiedTime(manifest, FileTime.fromMillis(System.currentTimeMillis()));
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to restore snapshot of {}. Falling back to git", commitId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Start storing a new snapshot
+     * @param commitId The commit being extracted
+     * @return A writer to add the extracted files to
+     */
+    public Writer store(String commitId) {
+        return new Writer(commitId);
+    }
+
+    /**
+     * Evict the least recently used snapshots, until the cache is below its size limit.
+     * Every manifest is read once, and the objects are swept once all evicted manifests are gone
+     */
+    private void evict() throws IOException {
+        if (!Files.isDirectory(objectsDir) || !Files.isDirectory(commitsDir))
+            return;
+
+        // Objects still being moved into place by another build end in .tmp, and are never touched
+        Map<String, Long> sizes = new HashMap<>();
+        long size = 0;
+        try (Stream<Path> stream = Files.walk(objectsDir)) {
+            for (Path object : (Iterable<Path>) stream.filter(p -> Files.isRegularFile(p) && !isTemporary(p))::iterator) {
+                long length = object.toFile().length();
+                sizes.put(object.getParent().getFileName().toString() + object.getFileName(), length);
+                size += length;
+            }
+        }
+
+        if (size <= maxSize)
+            return;
+
+        List<Path> manifests;
+        try (Stream<Path> stream = Files.list(commitsDir)) {
+            manifests = stream.filter(p -> !isTemporary(p)).sorted(Comparator.comparing(this::lastModified)).collect(Collectors.toList());
+        }
+
+        Map<Path, Set<String>> manifestObjects = new HashMap<>();
+        Map<String, Integer> references = new HashMap<>();
+        for (Path manifest : manifests) {
+            Set<String> objects = readObjects(manifest);
+            manifestObjects.put(manifest, objects);
+            objects.forEach(o -> references.merge(o, 1, Integer::sum));
+        }
+
+        // Objects no snapshot references are left over from failed builds, unless another build is still adding them
+        Set<String> unreferenced = new HashSet<>();
+        long orphanBefore = System.currentTimeMillis() - ORPHAN_AGE_MS;
+        for (Map.Entry<String, Long> object : sizes.entrySet()) {
+            if (!references.containsKey(object.getKey()) && lastModified(objectPath(object.getKey())).toMillis() < orphanBefore) {
+                unreferenced.add(object.getKey());
+                size -= object.getValue();
+            }
+        }
+
+        // The most recent snapshot is always kept
+        for (int i = 0; size > maxSize && i < manifests.size() - 1; i++) {
+            Path manifest = manifests.get(i);
+            Files.deleteIfExists(manifest);
+
+            for (String object : manifestObjects.get(manifest)) {
+                if (references.merge(object, -1, Integer::sum) == 0) {
+                    unreferenced.add(object);
+                    size -= sizes.getOrDefault(object, 0L);
+                }
+            }
+        }
+
+        for (String object : unreferenced) {
+            Files.deleteIfExists(objectPath(object));
+        }
+    }
+
+    private Set<String> readObjects(Path manifest) throws IOException {
+        Set<String> objects = new HashSet<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            objects.add(line.substring(0, line.indexOf(' ')));
+        }
+        return objects;
+    }
+
+    private static boolean isTemporary(Path path) {
+        return path.getFileName().toString().endsWith(".tmp");
+    }
+
+    private Path objectPath(String blobId) {
+        return objectsDir.resolve(blobId.substring(0, 2)).resolve(blobId.substring(2));
+    }
+
+    private FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private void linkOrCopy(Path from, Path to) throws IOException {
+        Files.deleteIfExists(to);
+
+        if (hardLinks) {
+            try {
+                Files.createLink(to, from);
+                return;
+            } catch (IOException | UnsupportedOperationException ignored) {
+                // Different file stores, or no hard link support. Fall back to copying
+            }
+        }
+
+        FileIO.INSTANCE.copy(from, to, false);
+    }
+
+    /**
+     * Collects the files of a commit while it is extracted from git. The snapshot is only
+     * committed to the cache once all files were added
+     */
+    public class Writer {
+        private final String commitId;
+        private final Map<String, String> entries = new LinkedHashMap<>();
+        private boolean failed = false;
+
+        Writer(String commitId) {
+            this.commitId = commitId;
+        }
+
+        /**
+         * Add an extracted file to the snapshot
+         * @param blobId The git blob id of the file
+         * @param path The repository relative path of the file
+         * @param file The extracted file
+         */
+        public void add(String blobId, String path, Path file) {
+            if (failed)
+                return;
+
+            try {
+                Path object = objectPath(blobId);
+                if (!Files.exists(object)) {
+                    Files.createDirectories(object.getParent());
+                    Path tmp = object.resolveSibling(object.getFileName() + "." + UUID.randomUUID() + ".tmp");
+                    linkOrCopy(file, tmp);
+                    Files.move(tmp, object, StandardCopyOption.ATOMIC_MOVE);
+                }
+                entries.put(path, blobId);
+            } catch (IOException e) {
+                logger.info("Failed to add {} to the snapshot cache", path, e);
+                failed = true;
+            }
+        }
+
+        /**
+         * Write the manifest of the snapshot, and evict old snapshots if the cache grew too large
+         */
+        public void commit() {
+            if (failed)
+                return;
+
+            try {
+                Files.createDirectories(commitsDir);
+                Path tmp = commitsDir.resolve(commitId + "." + UUID.randomUUID() + ".tmp");
+
+                try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                    for (Map.Entry<String, String> entry : entries.entrySet()) {
+                        writer.write(entry.getValue());
+                        writer.write(' ');
+                        writer.write(entry.getKey());
+                        writer.write('\n');
+                    }
+                }
+
+                Files.move(tmp, commitsDir.resolve(commitId), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                evict();
+            } catch (IOException e) {
+                logger.warn("Failed to store snapshot of {}", commitId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author HypherionSA
+ * Deletes large directories by renaming them into a sibling trash folder, and cleaning that folder up in the background.
+ * Anything left behind when the JVM exits, is reclaimed the next time the trash is used
+ */
+public class TrashCan {
+
+    public static final TrashCan INSTANCE = new TrashCan();
+    public static final String TRASH_DIR = ".orion-trash";
+
+    // Entries that are currently being deleted, so we don't schedule them twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor;
+
+    TrashCan() {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+            Thread t = new Thread(r, "orion-trash-" + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Move a directory into the trash, and schedule it for deletion.
+     * Falls back to a normal delete when the directory cannot be renamed
+     * @param logger The logger to report failures to
+     * @param dir The directory to remove
+     */
+    public void trash(Logger logger, File dir) {
+        if (!dir.exists())
+            return;
+
+        File trashDir = new File(dir.getAbsoluteFile().getParentFile(), TRASH_DIR);
+        File target = new File(trashDir, UUID.randomUUID().toString());
+
+        try {
+            Files.createDirectories(trashDir.toPath());
+            Files.move(dir.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            logger.info("Cannot atomically move {} into the trash. Deleting it directly", dir);
+            FileUtils.deleteQuietly(dir);
+        } catch (IOException e) {
+            logger.warn("Failed to move {} into the trash. Deleting it directly", dir, e);
+            FileUtils.deleteQuietly(dir);
+        }
+
+        empty(trashDir);
+    }
+
+    /**
+     * Schedule deletion of everything inside a trash directory, including leftovers from previous runs
+     * @param trashDir The trash directory to empty
+     */
+    public void empty(File trashDir) {
+        File[] entries = trashDir.listFiles();
+        if (entries == null)
+            return;
+
+        for (File entry : entries) {
+            if (!pending.add(entry.getAbsolutePath()))
+                continue;
+
+            purge(entry).whenComplete((v, t) -> pending.remove(entry.getAbsolutePath()));
+        }
+    }
+
+    /**
+     * Delete a single trash entry. The top level children are deleted in parallel
+     * @param entry The trashed directory
+     * @return A future that completes once the entry is gone
+     */
+    private CompletableFuture<Void> purge(File entry) {
+        File[] children = entry.listFiles();
+        if (children == null)
+            return CompletableFuture.runAsync(() -> FileUtils.deleteQuietly(entry), executor);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (File child : children) {
+            futures.add(CompletableFuture.runAsync(() -> FileUtils.deleteQuietly(child), executor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenRunAsync(() -> FileUtils.deleteQuietly(entry), executor);
+    }
+}
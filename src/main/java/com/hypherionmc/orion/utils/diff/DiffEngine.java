@@ -0,0 +1,53 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils.diff;
+
+import com.hypherionmc.orion.utils.ProgressReporter;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * @author HypherionSA
+ * A diff engine generates the patches of a porting branch. Every engine must produce unified diffs
+ * with a/ and b/ prefixes, so patches can always be applied by DiffPatch, no matter which engine made them
+ */
+public interface DiffEngine {
+
+    /**
+     * @return The name used to select the engine in the porting extension
+     */
+    String getName();
+
+    /**
+     * Generate patches for all changes between two directories. Engines may be called from Gradle workers,
+     * so they must not access the project
+     * @param logger The logger to report to
+     * @param progress The progress of the operation, to count the diffed files on
+     * @param base The unmodified directory
+     * @param modified The modified directory
+     * @param ignored Path prefixes, relative to both directories, that must not be diffed
+     * @param output The patches directory, or the bundle file when bundled is true
+     * @param bundled If the patches must be written as a zip bundle
+     * @throws Exception Shit went wrong
+     */
+    void diffTree(Logger logger, ProgressReporter progress, Path base, Path modified, Set<String> ignored, File output, boolean bundled) throws Exception;
+
+    /**
+     * Generate the patch for a single file. No patch is written when the files are the same
+     * @param logger The logger to report to
+     * @param base The unmodified file
+     * @param modified The modified file
+     * @param path The repository relative path of the file, used in the patch header
+     * @param patch The patch file to write
+     * @throws Exception Shit went wrong
+     */
+    void diffFile(Logger logger, Path base, Path modified, String path, File patch) throws Exception;
+
+}
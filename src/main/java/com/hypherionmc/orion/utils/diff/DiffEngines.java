@@ -0,0 +1,68 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils.diff;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import org.gradle.api.GradleException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author HypherionSA
+ * Registry of the available diff engines. Other plugins can register their own engines, and select them by name
+ */
+public class DiffEngines {
+
+    public static final DiffEngines INSTANCE = new DiffEngines();
+    public static final String DEFAULT = DiffPatchEngine.NAME;
+
+    private final Map<String, DiffEngine> engines = new ConcurrentHashMap<>();
+
+    DiffEngines() {
+        register(new DiffPatchEngine());
+        register(new HistogramDiffEngine());
+    }
+
+    /**
+     * Register a diff engine, replacing any engine with the same name
+     * @param engine The engine to register
+     */
+    public void register(DiffEngine engine) {
+        engines.put(engine.getName(), engine);
+    }
+
+    /**
+     * Get a diff engine by name
+     * @param name The name of the engine
+     * @return The engine
+     * @throws GradleException No engine with this name is registered
+     */
+    public DiffEngine get(String name) {
+        DiffEngine engine = engines.get(name);
+        if (engine == null)
+            throw new GradleException("Unknown diff engine '" + name + "'. Available engines: " + engines.keySet());
+
+        return engine;
+    }
+
+    /**
+     * Get the diff engine configured for a porting branch
+     * @param extension The porting extension
+     * @param branch The porting branch
+     * @return The engine set for the branch, or the default engine of the extension
+     */
+    public DiffEngine forBranch(OrionPortingExtension extension, String branch) {
+        return get(extension.getBranchDiffEngines().get().getOrDefault(branch, extension.getDiffEngine().get()));
+    }
+
+    public Collection<DiffEngine> getEngines() {
+        return Collections.unmodifiableCollection(engines.values());
+    }
+}
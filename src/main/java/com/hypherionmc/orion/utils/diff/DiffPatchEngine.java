@@ -0,0 +1,76 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils.diff;
+
+import codechicken.diffpatch.cli.CliOperation;
+import codechicken.diffpatch.cli.DiffOperation;
+import codechicken.diffpatch.util.LoggingOutputStream;
+import codechicken.diffpatch.util.archiver.ArchiveFormat;
+import com.hypherionmc.orion.utils.ProgressReporter;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * @author HypherionSA
+ * The default diff engine, backed by DiffPatch
+ */
+public class DiffPatchEngine implements DiffEngine {
+
+    public static final String NAME = "diffpatch";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void diffTree(Logger logger, ProgressReporter progress, Path base, Path modified, Set<String> ignored, File output, boolean bundled) throws Exception {
+        DiffOperation.Builder builder = DiffOperation.builder()
+                .logTo(new LoggingOutputStream(logger, LogLevel.LIFECYCLE))
+                .aPath(base)
+                .bPath(modified)
+                .outputPath(output.toPath(), bundled ? ArchiveFormat.ZIP : null)
+                .autoHeader(false)
+                .summary(true)
+                .aPrefix("a/")
+                .bPrefix("b/")
+                .lineEnding(System.lineSeparator());
+
+        for (String i : ignored) {
+            builder.ignorePrefix(i);
+        }
+
+        // DiffPatch doesn't report per file progress, so only the elapsed time can be shown
+        check(builder.build().operate());
+    }
+
+    @Override
+    public void diffFile(Logger logger, Path base, Path modified, String path, File patch) throws Exception {
+        DiffOperation.Builder builder = DiffOperation.builder()
+                .logTo(new LoggingOutputStream(logger, LogLevel.INFO))
+                .aPath(base)
+                .bPath(modified)
+                .outputPath(patch.toPath(), null)
+                .autoHeader(false)
+                .aPrefix("a/")
+                .bPrefix("b/")
+                .lineEnding(System.lineSeparator());
+
+        check(builder.build().operate());
+    }
+
+    private void check(CliOperation.Result<DiffOperation.DiffSummary> result) {
+        int exit = result.exit;
+        if (exit != 0 && exit != 1) {
+            throw new RuntimeException("DiffPatch failed with exit code: " + exit);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils.diff;
+
+import com.hypherionmc.orion.utils.DiffIgnore;
+import com.hypherionmc.orion.utils.FileIO;
+import com.hypherionmc.orion.utils.PatchBundle;
+import com.hypherionmc.orion.utils.ProgressReporter;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.gradle.api.logging.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author HypherionSA
+ * Diff engine backed by JGit's histogram diff. Histogram diff anchors on unique lines, so reordered
+ * members in large files produce smaller hunks than a plain Myers diff
+ */
+public class HistogramDiffEngine implements DiffEngine {
+
+    public static final String NAME = "histogram";
+    private static final DiffAlgorithm ALGORITHM = new HistogramDiff();
+    private static final String DEV_NULL = "/dev/null";
+    private static final Pattern HUNK_HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@", Pattern.MULTILINE);
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void diffTree(Logger logger, ProgressReporter progress, Path base, Path modified, Set<String> ignored, File output, boolean bundled) throws Exception {
+        Set<String> paths = DiffIgnore.listFiles(base, ignored);
+        paths.addAll(DiffIgnore.listFiles(modified, ignored));
+
+        // Bundles are written from a temporary tree, so both output formats share the same diff code
+        File tree = bundled ? new File(output.getAbsoluteFile().getParentFile(), output.getName() + ".tmp") : output;
+        FileUtils.deleteDirectory(tree);
+        FileUtils.deleteQuietly(output);
+
+        AtomicInteger count = new AtomicInteger();
+        progress.setTotal(paths.size());
+        try {
+            paths.parallelStream().forEach(path -> {
+                progress.step();
+
+                try {
+                    Path a = base.resolve(path);
+                    Path b = modified.resolve(path);
+
+                    // Large unchanged files are skipped without reading them onto the heap. Everything else is read
+                    // once, and the same bytes are compared and diffed
+                    if (isLarge(a) && isLarge(b) && FileIO.INSTANCE.contentEquals(a, b))
+                        return;
+
+                    byte[] aData = read(a);
+                    byte[] bData = read(b);
+
+                    // Patches are line based, so changed binary files are kept as they are, like DiffPatch does
+                    if (isBinary(aData, bData)) {
+                        if (!Arrays.equals(aData, bData))
+                            logger.warn("Skipping changed binary file {}", path);
+                        return;
+                    }
+
+                    byte[] patch = diff(path, aData, bData);
+                    if (patch != null) {
+                        FileUtils.writeByteArrayToFile(new File(tree, path + ".patch"), patch);
+                        count.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (bundled) {
+            if (tree.isDirectory())
+                PatchBundle.INSTANCE.pack(tree, output);
+            FileUtils.deleteDirectory(tree);
+        }
+
+        logger.lifecycle("Generated {} patches from {} files", count.get(), paths.size());
+    }
+
+    @Override
+    public void diffFile(Logger logger, Path base, Path modified, String path, File patch) throws Exception {
+        byte[] aData = read(base);
+        byte[] bData = read(modified);
+
+        if (isBinary(aData, bData)) {
+            if (!Arrays.equals(aData, bData))
+                logger.warn("Skipping changed binary file {}", path);
+            return;
+        }
+
+        byte[] data = diff(path, aData, bData);
+        if (data != null)
+            FileUtils.writeByteArrayToFile(patch, data);
+    }
+
+    /**
+     * Create a unified diff of two versions of a file
+     * @param path The repository relative path of the file
+     * @param a The original content, or null if the file was added
+     * @param b The modified content, or null if the file was removed
+     * @return The patch, or null if the contents are the same, or either version is binary
+     * @throws IOException Failed to format the diff
+     */
+    @Nullable
+    public static byte[] diff(String path, @Nullable byte[] a, @Nullable byte[] b) throws IOException {
+        if (Arrays.equals(a, b) || isBinary(a, b))
+            return null;
+
+        RawText aText = new RawText(terminate(a));
+        RawText bText = new RawText(terminate(b));
+        EditList edits = ALGORITHM.diff(RawTextComparator.DEFAULT, aText, bText);
+        if (edits.isEmpty())
+            return null;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(("--- " + (a == null ? DEV_NULL : "a/" + path) + "\n").getBytes(StandardCharsets.UTF_8));
+        out.write(("+++ " + (b == null ? DEV_NULL : "b/" + path) + "\n").getBytes(StandardCharsets.UTF_8));
+
+        try (DiffFormatter formatter = new DiffFormatter(out)) {
+            formatter.format(edits, aText, bText);
+            formatter.flush();
+        }
+
+        // Match the hunk headers and line endings of patches generated by DiffPatch
+        StringBuffer patch = new StringBuffer();
+        Matcher matcher = HUNK_HEADER.matcher(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            matcher.appendReplacement(patch, "@@ -" + range(matcher.group(1), matcher.group(2)) + " +" + range(matcher.group(3), matcher.group(4)) + " @@");
+        }
+        matcher.appendTail(patch);
+
+        return patch.toString().replace("\n", System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * JGit omits a count of 1, and points empty ranges at the line before them. DiffPatch always
+     * writes the count, and points empty ranges at the line after them
+     */
+    private static String range(String start, @Nullable String count) {
+        if (count == null)
+            return start + ",1";
+
+        if (count.equals("0"))
+            return (Integer.parseInt(start) + 1) + ",0";
+
+        return start + "," + count;
+    }
+
+    /**
+     * DiffPatch compares lines without their terminators, so a missing newline at the end of a file is not a change.
+     * Terminating the last line keeps JGit from emitting "No newline at end of file" markers
+     */
+    private static byte[] terminate(@Nullable byte[] data) {
+        if (data == null || data.length == 0)
+            return new byte[0];
+
+        if (data[data.length - 1] == '\n')
+            return data;
+
+        byte[] terminated = Arrays.copyOf(data, data.length + 1);
+        terminated[data.length] = '\n';
+        return terminated;
+    }
+
+    /**
+     * Check if either version of a file is binary, using the same heuristic as git
+     * @param a The original content, or null if the file was added
+     * @param b The modified content, or null if the file was removed
+     * @return True if a patch cannot be generated for the file
+     */
+    public static boolean isBinary(@Nullable byte[] a, @Nullable byte[] b) {
+        return (a != null && RawText.isBinary(a)) || (b != null && RawText.isBinary(b));
+    }
+
+    private static boolean isLarge(Path file) throws IOException {
+        return Files.isRegularFile(file) && Files.size(file) >= FileIO.MAP_THRESHOLD;
+    }
+
+    @Nullable
+    private static byte[] read(Path file) throws IOException {
+        return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.perf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stored results of the performance scenarios, as csv with one line per scenario.
+ * A scenario regresses when its wall time or peak heap exceeds the baseline by more than the threshold
+ */
+public class PerformanceBaseline {
+
+    private static final String HEADER = "scenario,wallMs,peakHeapMb";
+
+    private final Map<String, Result> results = new TreeMap<>();
+
+    /**
+     * Read a baseline. A missing file is an empty baseline
+     * @param file The csv file to read
+     * @return The baseline
+     * @throws IOException Failed to read the file
+     */
+    public static PerformanceBaseline read(Path file) throws IOException {
+        PerformanceBaseline baseline = new PerformanceBaseline();
+        if (!Files.isRegularFile(file))
+            return baseline;
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty() || line.startsWith("#") || line.equals(HEADER))
+                continue;
+
+            String[] parts = line.split(",");
+            baseline.put(parts[0], new Result(Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+        }
+
+        return baseline;
+    }
+
+    public synchronized Result get(String scenario) {
+        return results.get(scenario);
+    }
+
+    public synchronized void put(String scenario, Result result) {
+        results.put(scenario, result);
+    }
+
+    /**
+     * Compare a result with the baseline of its scenario
+     * @param scenario The scenario
+     * @param result The measured result
+     * @param threshold The allowed growth, for example 0.25 for 25 percent
+     * @return The regressions, empty if the result is within the threshold
+     */
+    public List<String> regressions(String scenario, Result result, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        Result baseline = get(scenario);
+        if (baseline == null)
+            return regressions;
+
+        if (result.wallMs > baseline.wallMs * (1 + threshold))
+            regressions.add(String.format("%s wall time %d ms exceeds the baseline of %d ms by more than %.0f%%", scenario, result.wallMs, baseline.wallMs, threshold * 100));
+
+        if (result.peakHeapMb > baseline.peakHeapMb * (1 + threshold))
+            regressions.add(String.format("%s peak heap %d MB exceeds the baseline of %d MB by more than %.0f%%", scenario, result.peakHeapMb, baseline.peakHeapMb, threshold * 100));
+
+        return regressions;
+    }
+
+    public synchronized void write(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        results.forEach((scenario, result) -> lines.add(scenario + "," + result.wallMs + "," + result.peakHeapMb));
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    public static class Result {
+        private final long wallMs;
+        private final long peakHeapMb;
+
+        public Result(long wallMs, long peakHeapMb) {
+            this.wallMs = wallMs;
+            this.peakHeapMb = peakHeapMb;
+        }
+
+        @Override
+        public String toString() {
+            return wallMs + " ms, " + peakHeapMb + " MB peak heap";
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.perf;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.testkit.runner.GradleRunner;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicContainer;
+import org.junit.jupiter.api.DynamicNode;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the porting and Origami tasks against generated repositories of increasing size, and fails when
+ * wall time or peak heap of a scenario regresses past the threshold of the stored baseline.
+ * Run with gradlew perfTest, which only runs the smallest size unless -Pperf.sizes=10000,50000,100000 selects more.
+ * Record a new baseline with -Pperf.updateBaseline=true
+ */
+class PortingPerformanceTest {
+
+    // The tasks to measure, in the order they run against the same repository
+    private static final List<String> SCENARIOS = Arrays.asList("rebuildPatches", "setupWorkspace", "generatePatches", "splitSources", ":" + SyntheticRepository.PLUGIN + ":preparePluginSources");
+
+    // Resets the heap peaks once the task graph is ready, and records the peak after every task
+    private static final String HEAP_SCRIPT = "import java.lang.management.*\n\n" +
+            "def pools = ManagementFactory.memoryPoolMXBeans.findAll { it.type == MemoryType.HEAP }\n" +
+            "def report = new File(gradle.startParameter.projectDir ?: gradle.startParameter.currentDir, 'peak-heap.txt')\n\n" +
+            "gradle.taskGraph.whenReady {\n" +
+            "    System.gc()\n" +
+            "    pools.each { it.resetPeakUsage() }\n" +
+            "    report.delete()\n" +
+            "}\n\n" +
+            "gradle.allprojects {\n" +
+            "    tasks.configureEach {\n" +
+            "        doLast {\n" +
+            "            report.text = String.valueOf(pools.sum { it.peakUsage.used })\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n";
+
+    private static PerformanceBaseline baseline;
+    private static PerformanceBaseline measured;
+    private static Path workDir;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        baseline = PerformanceBaseline.read(baselineFile());
+        measured = new PerformanceBaseline();
+        workDir = Files.createTempDirectory("orion-perf");
+    }
+
+    @AfterAll
+    static void report() throws IOException {
+        measured.write(Paths.get(System.getProperty("orion.perf.report", "build/reports/orion/perf.csv")));
+
+        if (Boolean.getBoolean("orion.perf.updateBaseline")) {
+            PerformanceBaseline updated = PerformanceBaseline.read(baselineFile());
+            for (String scenario : scenarioNames()) {
+                if (measured.get(scenario) != null)
+                    updated.put(scenario, measured.get(scenario));
+            }
+            updated.write(baselineFile());
+        }
+
+        FileUtils.deleteQuietly(workDir.toFile());
+    }
+
+    @TestFactory
+    List<DynamicNode> scenarios() {
+        List<DynamicNode> sizes = new ArrayList<>();
+
+        for (int files : sizes()) {
+            SyntheticRepository repository = new SyntheticRepository(workDir.resolve(files + "-files"), files, branches(), patchDensity());
+            List<DynamicTest> tests = new ArrayList<>();
+
+            // Generating the repository and starting the daemon are not part of any measurement
+            tests.add(DynamicTest.dynamicTest("generate", () -> {
+                repository.generate();
+                Files.write(repository.getRoot().resolve("peak-heap.gradle"), HEAP_SCRIPT.getBytes(StandardCharsets.UTF_8));
+                runner(repository, "help").build();
+            }));
+
+            for (String task : SCENARIOS) {
+                tests.add(DynamicTest.dynamicTest(task, () -> measure(repository, scenarioName(task, files), task)));
+            }
+
+            sizes.add(DynamicContainer.dynamicContainer(files + " files", tests));
+        }
+
+        return sizes;
+    }
+
+    private static void measure(SyntheticRepository repository, String scenario, String task) throws IOException {
+        long start = System.nanoTime();
+        runner(repository, task, "--rerun-tasks").build();
+        long wallMs = (System.nanoTime() - start) / 1_000_000;
+
+        Path heap = repository.getRoot().resolve("peak-heap.txt");
+        long peakHeapMb = Files.isRegularFile(heap) ? Long.parseLong(new String(Files.readAllBytes(heap), StandardCharsets.UTF_8).trim()) / (1024 * 1024) : 0;
+
+        PerformanceBaseline.Result result = new PerformanceBaseline.Result(wallMs, peakHeapMb);
+        measured.put(scenario, result);
+        System.out.println(scenario + ": " + result);
+
+        // Recording a baseline measures scenarios that don't have one yet
+        if (Boolean.getBoolean("orion.perf.updateBaseline"))
+            return;
+
+        assertNotNull(baseline.get(scenario), "No baseline for " + scenario + ". Record one with -Pperf.updateBaseline=true");
+
+        List<String> regressions = baseline.regressions(scenario, result, threshold());
+        assertTrue(regressions.isEmpty(), () -> String.join("\n", regressions));
+    }
+
+    private static GradleRunner runner(SyntheticRepository repository, String... arguments) {
+        List<String> args = new ArrayList<>(Arrays.asList("-I", "peak-heap.gradle", "--stacktrace"));
+        args.addAll(Arrays.asList(arguments));
+
+        return GradleRunner.create()
+                .withProjectDir(repository.getRoot().toFile())
+                .withPluginClasspath()
+                .withArguments(args)
+                .forwardOutput();
+    }
+
+    private static String scenarioName(String task, int files) {
+        return task.replace(":", "") + "-" + files + "-" + branches() + "-" + patchDensity();
+    }
+
+    private static List<String> scenarioNames() {
+        List<String> names = new ArrayList<>();
+        for (int files : sizes()) {
+            for (String task : SCENARIOS) {
+                names.add(scenarioName(task, files));
+            }
+        }
+        return names;
+    }
+
+    private static Path baselineFile() {
+        return Paths.get(System.getProperty("orion.perf.baseline", "src/perfTest/baseline.csv"));
+    }
+
+    private static List<Integer> sizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : System.getProperty("orion.perf.sizes", "10000").split(",")) {
+            sizes.add(Integer.parseInt(size.trim()));
+        }
+        return sizes;
+    }
+
+    private static int branches() {
+        return Integer.getInteger("orion.perf.branches", 2);
+    }
+
+    private static double patchDensity() {
+        return Double.parseDouble(System.getProperty("orion.perf.patchDensity", "0.05"));
+    }
+
+    private static double threshold() {
+        return Double.parseDouble(System.getProperty("orion.perf.threshold", "0.25"));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.perf;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a porting project offline. The upstream branch is a single commit of generated java sources,
+ * written straight into the object database. Every porting branch directory holds a copy of the sources,
+ * with a share of the files modified, so patches can be rebuilt from it
+ */
+public class SyntheticRepository {
+
+    public static final String UPSTREAM = "upstream";
+    public static final String COMMON = "Common";
+    public static final String PLUGIN = "Paper";
+
+    private static final int FILES_PER_PACKAGE = 100;
+
+    private final Path root;
+    private final int files;
+    private final List<String> branches = new ArrayList<>();
+    private final double patchDensity;
+
+    public SyntheticRepository(Path root, int files, int branches, double patchDensity) {
+        this.root = root;
+        this.files = files;
+        this.patchDensity = patchDensity;
+
+        for (int i = 0; i < branches; i++) {
+            this.branches.add("branch" + i);
+        }
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Write the git repository, the porting branch directories, and the build scripts
+     * @throws Exception Failed to write the repository
+     */
+    public void generate() throws Exception {
+        Files.createDirectories(root);
+        writeCommit();
+        writeBranches();
+        writeBuild();
+    }
+
+    private void writeCommit() throws Exception {
+        try (Git git = Git.init().setDirectory(root.toFile()).setInitialBranch(UPSTREAM).call();
+             ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            DirCache index = DirCache.newInCore();
+            DirCacheBuilder builder = index.builder();
+
+            for (int i = 0; i < files; i++) {
+                DirCacheEntry entry = new DirCacheEntry(path(i));
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, source(i, false)));
+                builder.add(entry);
+            }
+            builder.finish();
+
+            PersonIdent author = new PersonIdent("Orion", "orion@example.com", 0, 0);
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(index.writeTree(inserter));
+            commit.setAuthor(author);
+            commit.setCommitter(author);
+            commit.setMessage("Generated upstream sources");
+
+            ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+
+            RefUpdate update = git.getRepository().updateRef(Constants.R_HEADS + UPSTREAM);
+            update.setNewObjectId(commitId);
+            update.forceUpdate();
+        }
+    }
+
+    private void writeBranches() throws IOException {
+        // Every nth file of a branch is modified, offset per branch so the branches differ
+        int step = patchDensity <= 0 ? Integer.MAX_VALUE : Math.max(1, (int) Math.round(1 / patchDensity));
+
+        for (int b = 0; b < branches.size(); b++) {
+            Path dir = root.resolve(branches.get(b));
+
+            for (int i = 0; i < files; i++) {
+                write(dir.resolve(path(i)), source(i, (i + b) % step == 0));
+            }
+        }
+
+        // The same sources double as the common project of the Origami scenario
+        for (int i = 0; i < files; i++) {
+            write(root.resolve(COMMON).resolve(path(i)), source(i, false));
+        }
+    }
+
+    private void writeBuild() throws IOException {
+        StringBuilder porting = new StringBuilder();
+        for (String branch : branches) {
+            porting.append("    porting '").append(branch).append("'\n");
+        }
+
+        write(root.resolve("settings.gradle"), ("rootProject.name = 'synthetic'\n" +
+                "include '" + COMMON + "', '" + PLUGIN + "'\n").getBytes(StandardCharsets.UTF_8));
+
+        write(root.resolve("build.gradle"), ("plugins {\n" +
+                "    id 'com.hypherionmc.modutils.orion.porting'\n" +
+                "}\n\n" +
+                "orionporting {\n" +
+                "    upstreamBranch.set('" + UPSTREAM + "')\n" +
+                porting +
+                "}\n").getBytes(StandardCharsets.UTF_8));
+
+        write(root.resolve(COMMON).resolve("build.gradle"), "plugins {\n    id 'java'\n    id 'com.hypherionmc.modutils.orion.origami.common'\n}\n".getBytes(StandardCharsets.UTF_8));
+
+        write(root.resolve(PLUGIN).resolve("build.gradle"), ("plugins {\n" +
+                "    id 'java'\n" +
+                "    id 'com.hypherionmc.modutils.orion.origami'\n" +
+                "}\n\n" +
+                "origami {\n" +
+                "    commonProject.set('" + COMMON + "')\n" +
+                "    excludedPackages.add('com.example.p0')\n" +
+                "}\n").getBytes(StandardCharsets.UTF_8));
+
+        write(root.resolve("gradle.properties"), "org.gradle.jvmargs=-Xmx3g\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String path(int i) {
+        return "src/main/java/com/example/p" + (i / FILES_PER_PACKAGE) + "/Generated" + i + ".java";
+    }
+
+    private static byte[] source(int i, boolean modified) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("package com.example.p").append(i / FILES_PER_PACKAGE).append(";\n\n");
+        builder.append("public class Generated").append(i).append(" {\n\n");
+
+        for (int m = 0; m < 8; m++) {
+            builder.append("    public int method").append(m).append("(int value) {\n");
+            if (modified && m == 4) {
+                builder.append("        // Ported\n");
+                builder.append("        value = value * ").append(i % 7 + 2).append(";\n");
+            }
+            builder.append("        return value + ").append(i * 8 + m).append(";\n");
+            builder.append("    }\n\n");
+        }
+
+        builder.append("}\n");
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+}
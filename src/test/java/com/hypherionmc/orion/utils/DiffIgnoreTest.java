@@ -0,0 +1,85 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiffIgnoreTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void anchoredRulesOnlyMatchTheRoot() throws IOException {
+        DiffIgnore ignore = new DiffIgnore(Arrays.asList("/build/", "/out/"), false);
+        write("build/classes/Main.class");
+        write("src/main/java/com/example/build/Builder.java");
+        write("src/main/java/com/example/out/Output.java");
+
+        assertTrue(ignore.isIgnored(tmp, "build/classes/Main.class", false));
+        assertFalse(ignore.isIgnored(tmp, "src/main/java/com/example/build/Builder.java", false));
+        assertFalse(ignore.isIgnored(tmp, "src/main/java/com/example/out/Output.java", false));
+        assertEquals(Collections.singleton("build/"), ignore.collectIgnored(tmp));
+    }
+
+    @Test
+    void singleChecksMatchTheWalkWithGitIgnore() throws IOException {
+        DiffIgnore ignore = new DiffIgnore(Collections.singletonList("/.gradle/"), true);
+        write(".gitignore", "*.log\n/generated/\n");
+        write("sub/.gitignore", "local/\n!keep.log\n");
+        write(".gradle/8.5/file.lock");
+        write("generated/Gen.java");
+        write("error.log");
+        write("src/Main.java");
+        write("sub/local/Local.java");
+        write("sub/keep.log");
+        write("sub/drop/other.log");
+
+        Set<String> walked = ignore.collectIgnored(tmp);
+        assertEquals(new TreeSet<>(Arrays.asList(".gradle/", "error.log", "generated/", "sub/drop/other.log", "sub/local/")), walked);
+
+        for (String path : Arrays.asList(".gradle/8.5/file.lock", "generated/Gen.java", "error.log", "src/Main.java", "sub/local/Local.java", "sub/keep.log", "sub/drop/other.log")) {
+            boolean expected = walked.stream().anyMatch(w -> w.equals(path) || (w.endsWith("/") && path.startsWith(w)));
+            assertEquals(expected, ignore.isIgnored(tmp, path, false), path);
+        }
+    }
+
+    @Test
+    void listingPrunesIgnoredDirectories() throws IOException {
+        write("src/Main.java");
+        write("src/Main.java.orig");
+        write("build/classes/Main.class");
+        write("sub/build/Output.java");
+        write("notes.txt");
+
+        Set<String> ignored = new TreeSet<>(Arrays.asList("build/", "notes.txt", "src/Main.java"));
+        assertEquals(new TreeSet<>(Arrays.asList("src/Main.java.orig", "sub/build/Output.java")), DiffIgnore.listFiles(tmp, ignored));
+        assertTrue(DiffIgnore.listFiles(tmp.resolve("missing"), ignored).isEmpty());
+    }
+
+    private void write(String path) throws IOException {
+        write(path, "");
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = tmp.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
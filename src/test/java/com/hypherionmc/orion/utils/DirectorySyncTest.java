@@ -0,0 +1,72 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectorySyncTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void keepsIgnoredPathsInTheTarget() throws IOException {
+        Path source = tmp.resolve("workspace");
+        Path target = tmp.resolve("branch");
+        write(source.resolve("src/main/java/Main.java"), "class Main {}");
+
+        write(target.resolve("src/main/java/Main.java"), "class Old {}");
+        write(target.resolve("src/main/java/Removed.java"), "class Removed {}");
+        write(target.resolve("build/classes/java/main/Main.class"), "compiled");
+        write(target.resolve(".gradle/8.8/checksums/checksums.lock"), "lock");
+        write(target.resolve("stale/build/output.txt"), "output");
+
+        DirectorySync.Result result = DirectorySync.INSTANCE.sync(source, target, null, new DiffIgnore(Arrays.asList("build/", ".gradle/"), false));
+
+        assertEquals("class Main {}", read(target.resolve("src/main/java/Main.java")));
+        assertFalse(Files.exists(target.resolve("src/main/java/Removed.java")));
+        assertTrue(Files.exists(target.resolve("build/classes/java/main/Main.class")));
+        assertTrue(Files.exists(target.resolve(".gradle/8.8/checksums/checksums.lock")));
+
+        // Directories that only exist in the target stay while they hold ignored files
+        assertTrue(Files.exists(target.resolve("stale/build/output.txt")));
+
+        assertEquals(1, result.getCopied().get());
+        assertEquals(1, result.getDeleted().get());
+    }
+
+    @Test
+    void removesEmptyDirectories() throws IOException {
+        Path source = tmp.resolve("workspace");
+        Path target = tmp.resolve("branch");
+        write(source.resolve("src/Main.java"), "class Main {}");
+        write(target.resolve("src/old/Removed.java"), "class Removed {}");
+
+        DirectorySync.INSTANCE.sync(source, target);
+
+        assertTrue(Files.exists(target.resolve("src/Main.java")));
+        assertFalse(Files.exists(target.resolve("src/old")));
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileIOTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void comparesSmallAndLargeFiles() throws IOException {
+        // Empty, buffer sized, spanning several buffers, and mapped
+        for (int size : new int[] {0, 1, 64 * 1024 - 1, 64 * 1024, 3 * 64 * 1024 + 17}) {
+            byte[] content = content(size);
+            Path a = write("a-" + size, content);
+            assertTrue(FileIO.INSTANCE.contentEquals(a, write("b-" + size, content)), "same " + size);
+
+            if (size == 0)
+                continue;
+
+            byte[] changed = Arrays.copyOf(content, size);
+            changed[size - 1]++;
+            assertFalse(FileIO.INSTANCE.contentEquals(a, write("c-" + size, changed)), "last byte " + size);
+        }
+    }
+
+    @Test
+    void missingOrDifferentSizeFilesAreNotEqual() throws IOException {
+        Path a = write("a", content(100));
+        assertFalse(FileIO.INSTANCE.contentEquals(a, write("b", content(101))));
+        assertFalse(FileIO.INSTANCE.contentEquals(a, tmp.resolve("missing")));
+    }
+
+    @Test
+    void copiesReplaceTheTarget() throws IOException {
+        Path from = write("from", content(200 * 1024));
+        Path to = write("out/to", content(10));
+
+        FileIO.INSTANCE.copy(from, to, true);
+
+        assertTrue(FileIO.INSTANCE.contentEquals(from, to));
+        assertEquals(Files.getLastModifiedTime(from), Files.getLastModifiedTime(to));
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        Path file = tmp.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content);
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+}
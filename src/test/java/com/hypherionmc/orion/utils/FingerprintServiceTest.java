@@ -0,0 +1,55 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void identicalSavesAreNotContentChanges() throws IOException {
+        FingerprintService fingerprints = service();
+        Path file = tmp.resolve("Main.java");
+
+        save(file, "class Main {}", 1000);
+        assertTrue(fingerprints.hasContentChanged(file));
+
+        // Saving the same content again only touches the modification time
+        save(file, "class Main {}", 2000);
+        assertTrue(fingerprints.hasChanged(file));
+        assertFalse(fingerprints.hasContentChanged(file));
+
+        save(file, "class Main { int x; }", 3000);
+        assertTrue(fingerprints.hasContentChanged(file));
+        assertFalse(fingerprints.hasContentChanged(file));
+    }
+
+    private FingerprintService service() {
+        Project project = ProjectBuilder.builder().withProjectDir(tmp.resolve("project").toFile()).build();
+        return FingerprintService.register(project).get();
+    }
+
+    private static void save(Path file, String content, long modified) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+    }
+}
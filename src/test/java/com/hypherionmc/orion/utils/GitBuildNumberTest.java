@@ -0,0 +1,43 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitBuildNumberTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void movedTagsInvalidateTheCache() throws Exception {
+        try (Git git = Git.init().setDirectory(tmp.toFile()).setInitialBranch("main").call()) {
+            RevCommit first = git.commit().setMessage("First").setAllowEmpty(true).call();
+            git.tag().setName("v1").setObjectId(first).call();
+            git.commit().setMessage("Second").setAllowEmpty(true).call();
+            RevCommit third = git.commit().setMessage("Third").setAllowEmpty(true).call();
+
+            assertEquals(2, GitBuildNumber.INSTANCE.getBuildNumber(tmp.toFile()));
+
+            // Same HEAD and the same number of tags, but the tag now points at HEAD
+            git.tagDelete().setTags("v1").call();
+            git.tag().setName("v2").setObjectId(third).setAnnotated(true).setMessage("v2").call();
+            assertEquals(0, GitBuildNumber.INSTANCE.getBuildNumber(tmp.toFile()));
+
+            // Moving forward extends the cached count
+            git.commit().setMessage("Fourth").setAllowEmpty(true).call();
+            assertEquals(1, GitBuildNumber.INSTANCE.getBuildNumber(tmp.toFile()));
+        }
+    }
+}
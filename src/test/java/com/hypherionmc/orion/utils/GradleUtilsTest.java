@@ -0,0 +1,103 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import com.hypherionmc.orion.plugin.OrionExtension;
+import com.hypherionmc.orion.plugin.OrionPlugin;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Resolves dependencies against local file based stand-ins for the First Dark Dev mavens
+ */
+class GradleUtilsTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void mavensAreNotFilteredByDefault() throws IOException {
+        Project project = project();
+        OrionExtension extension = project.getExtensions().getByType(OrionExtension.class);
+        extension.getEnableReleasesMaven().set(true);
+        GradleUtils.INSTANCE.configureProject(project, extension);
+
+        File releases = tmp.resolve("releases").toFile();
+        publish(releases, "org.example", "library", "1.0");
+        redirect(project, "First Dark Dev Maven", releases);
+
+        assertTrue(resolves(project, "org.example:library:1.0"));
+    }
+
+    @Test
+    void filteredMavensOnlyServeTheirGroups() throws IOException {
+        Project project = project();
+        OrionExtension extension = project.getExtensions().getByType(OrionExtension.class);
+        extension.getEnableReleasesMaven().set(true);
+        extension.getEnableMirrorMaven().set(true);
+        extension.filterMavenGroups();
+        GradleUtils.INSTANCE.configureProject(project, extension);
+
+        File releases = tmp.resolve("releases").toFile();
+        File mirror = tmp.resolve("mirror").toFile();
+        publish(releases, "dev.firstdark", "library", "1.0");
+        publish(releases, "org.example", "library", "1.0");
+        publish(mirror, "org.other", "library", "1.0");
+        redirect(project, "First Dark Dev Maven", releases);
+        redirect(project, "First Dark Dev Mirror", mirror);
+
+        assertTrue(resolves(project, "dev.firstdark:library:1.0"));
+        assertTrue(resolves(project, "org.other:library:1.0"));
+
+        // Only available from the releases maven, which no longer serves this group
+        assertFalse(resolves(project, "org.example:library:1.0"));
+    }
+
+    private Project project() {
+        Project project = ProjectBuilder.builder().withProjectDir(tmp.resolve("project").toFile()).build();
+        project.getPlugins().apply("java");
+        project.getPlugins().apply(OrionPlugin.class);
+        return project;
+    }
+
+    private static void redirect(Project project, String name, File dir) {
+        project.getRepositories().named(name, MavenArtifactRepository.class).configure(m -> m.setUrl(dir.toURI()));
+    }
+
+    private static boolean resolves(Project project, String notation) {
+        Configuration configuration = project.getConfigurations().detachedConfiguration(project.getDependencies().create(notation));
+        return !configuration.getResolvedConfiguration().hasError();
+    }
+
+    private static void publish(File repository, String group, String artifact, String version) throws IOException {
+        Path dir = repository.toPath().resolve(group.replace('.', '/')).resolve(artifact).resolve(version);
+        Files.createDirectories(dir);
+
+        String pom = "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+                "  <modelVersion>4.0.0</modelVersion>\n" +
+                "  <groupId>" + group + "</groupId>\n" +
+                "  <artifactId>" + artifact + "</artifactId>\n" +
+                "  <version>" + version + "</version>\n" +
+                "</project>\n";
+
+        Files.write(dir.resolve(artifact + "-" + version + ".pom"), pom.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve(artifact + "-" + version + ".jar"), new byte[0]);
+    }
+}
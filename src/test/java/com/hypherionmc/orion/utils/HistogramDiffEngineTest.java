@@ -0,0 +1,108 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import codechicken.diffpatch.patch.Patcher;
+import codechicken.diffpatch.util.PatchFile;
+import codechicken.diffpatch.util.PatchMode;
+import com.hypherionmc.orion.utils.diff.HistogramDiffEngine;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.logging.progress.ProgressLoggerFactory;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static com.hypherionmc.orion.utils.PortingFixture.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramDiffEngineTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void patchesApplyWithDiffPatch() throws IOException {
+        String ten = lines("1", "2", "3", "4", "5", "6", "7", "8", "9", "10");
+
+        // Added and deleted files
+        roundTrip(null, lines("class Added {}"));
+        roundTrip(lines("class Deleted {}"), null);
+
+        // Empty ranges, on either side
+        assertTrue(roundTrip("", lines("line")).contains("@@ -1,0 +1,1 @@"));
+        assertTrue(roundTrip(lines("line"), "").contains("@@ -1,1 +1,0 @@"));
+
+        // One line ranges
+        assertTrue(roundTrip(lines("before"), lines("after")).contains("@@ -1,1 +1,1 @@"));
+
+        // Changes in the middle and at the end of a file
+        roundTrip(ten, ten.replace(lines("5"), lines("5", "5.5")));
+        roundTrip(ten, ten + lines("11"));
+        roundTrip(ten, ten.replace(lines("1", "2"), ""));
+    }
+
+    @Test
+    void binaryFilesAreSkipped() throws Exception {
+        Path base = tmp.resolve("base");
+        Path modified = tmp.resolve("modified");
+        write(base.resolve("src/Main.java"), lines("class Main {}"));
+        write(modified.resolve("src/Main.java"), lines("class Main { int a; }"));
+        Files.write(createParent(base.resolve("assets/icon.png")), new byte[] {(byte) 0x89, 'P', 'N', 'G', 0, 0, 1});
+        Files.write(createParent(modified.resolve("assets/icon.png")), new byte[] {(byte) 0x89, 'P', 'N', 'G', 0, 0, 2});
+
+        assertNull(HistogramDiffEngine.diff("assets/icon.png", Files.readAllBytes(base.resolve("assets/icon.png")), Files.readAllBytes(modified.resolve("assets/icon.png"))));
+
+        File output = tmp.resolve("patches").toFile();
+        try (ProgressReporter progress = ProgressReporter.start((ProgressLoggerFactory) null, "Diffing", "files", 0)) {
+            new HistogramDiffEngine().diffTree(Logging.getLogger(HistogramDiffEngineTest.class), progress, base, modified, Collections.emptySet(), output, false);
+        }
+
+        assertEquals(Collections.singleton("src/Main.java.patch"), tree(output.toPath()).keySet());
+    }
+
+    /**
+     * Diff two versions of a file, apply the patch with DiffPatch, and check the result matches the modified version
+     * @return The patch
+     */
+    private static String roundTrip(@Nullable String original, @Nullable String modified) throws IOException {
+        byte[] patch = HistogramDiffEngine.diff("src/Main.java", bytes(original), bytes(modified));
+        assertNotNull(patch);
+
+        PatchFile patchFile = PatchFile.fromLines("src/Main.java.patch", PatchChecker.lines(patch), true);
+        Patcher patcher = new Patcher(patchFile, original == null ? new ArrayList<>() : PatchChecker.lines(bytes(original)));
+        patcher.patch(PatchMode.EXACT);
+
+        String text = new String(patch, StandardCharsets.UTF_8);
+        assertTrue(patcher.getResults().stream().allMatch(r -> r.success), text);
+
+        if (modified == null) {
+            assertTrue(patchFile.patchedPath.endsWith("/dev/null"), text);
+        } else {
+            assertEquals(PatchChecker.lines(bytes(modified)), patcher.lines, text);
+        }
+
+        return text;
+    }
+
+    @Nullable
+    private static byte[] bytes(@Nullable String content) {
+        return content == null ? null : content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Path createParent(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        return file;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.hypherionmc.orion.utils.PortingFixture.read;
+import static com.hypherionmc.orion.utils.PortingFixture.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Builds two Origami projects against one common project, with isolated projects enabled
+ */
+class OrigamiPluginTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void commonSourcesArePreparedOnceAndFilteredPerProject() throws IOException {
+        write(tmp.resolve("settings.gradle"), "rootProject.name = 'origami'\ninclude 'Common', 'Paper', 'Spigot'\n");
+        write(tmp.resolve("gradle.properties"), "org.gradle.unsafe.isolated-projects=true\n");
+        write(tmp.resolve("Common/build.gradle"), "plugins {\n    id 'java'\n    id 'com.hypherionmc.modutils.orion.origami.common'\n}\n");
+        write(tmp.resolve("Common/src/main/java/org/example/Shared.java"), "package org.example;\n\npublic class Shared {\n    // @noplugin\n    int stripped;\n    // #noplugin\n}\n");
+        write(tmp.resolve("Common/src/main/java/org/example/fabric/Platform.java"), "package org.example.fabric;\n\npublic class Platform {}\n");
+        write(tmp.resolve("Paper/build.gradle"), plugin("['org.example.fabric']"));
+        write(tmp.resolve("Spigot/build.gradle"), plugin("[]"));
+
+        BuildResult result = run("compileJava").build();
+        assertEquals(TaskOutcome.SUCCESS, result.task(":Common:prepareOrigamiSources").getOutcome());
+        assertEquals(TaskOutcome.SUCCESS, result.task(":Paper:compileJava").getOutcome());
+        assertEquals(TaskOutcome.SUCCESS, result.task(":Spigot:compileJava").getOutcome());
+
+        assertFalse(read(tmp.resolve("Paper/build/origami/java/org/example/Shared.java")).contains("stripped"));
+        assertFalse(Files.exists(tmp.resolve("Paper/build/origami/java/org/example/fabric")));
+        assertTrue(Files.exists(tmp.resolve("Spigot/build/origami/java/org/example/fabric/Platform.java")));
+    }
+
+    @Test
+    void commonProjectWithoutJavaFails() throws IOException {
+        write(tmp.resolve("settings.gradle"), "rootProject.name = 'origami'\ninclude 'Common', 'Paper'\n");
+        write(tmp.resolve("Common/build.gradle"), "plugins {\n    id 'com.hypherionmc.modutils.orion.origami.common'\n}\n");
+        write(tmp.resolve("Paper/build.gradle"), plugin("[]"));
+
+        BuildResult result = run("compileJava").buildAndFail();
+        assertTrue(result.getOutput().contains("Origami common project :Common must apply the java plugin"), result.getOutput());
+    }
+
+    private static String plugin(String excludedPackages) {
+        return "plugins {\n" +
+                "    id 'java'\n" +
+                "    id 'com.hypherionmc.modutils.orion.origami'\n" +
+                "}\n" +
+                "\n" +
+                "origami {\n" +
+                "    excludedPackages = " + excludedPackages + "\n" +
+                "}\n";
+    }
+
+    private GradleRunner run(String... arguments) {
+        return GradleRunner.create()
+                .withProjectDir(tmp.toFile())
+                .withPluginClasspath()
+                .withArguments(arguments)
+                .forwardOutput();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.hypherionmc.orion.utils.PortingFixture.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatchBundleTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void bundlesRoundTripThePatchesTree() throws IOException {
+        File patchesDir = tmp.resolve("patches").toFile();
+        Path tree = patchesDir.toPath().resolve("1.20");
+        write(tree.resolve("src/Main.java.patch"), "--- a/src/Main.java\n+++ b/src/Main.java\n");
+        write(tree.resolve("src/nested/Other.java.patch"), "--- a/src/nested/Other.java\n+++ b/src/nested/Other.java\n");
+
+        File bundle = PatchBundle.INSTANCE.getBundle(patchesDir, "1.20");
+        assertEquals(2, PatchBundle.INSTANCE.pack(tree.toFile(), bundle));
+
+        // Bundled and loose patches read the same
+        Map<String, String> loose = strings(PatchBundle.INSTANCE.readAll(patchesDir, "1.20", false));
+        assertEquals(tree(tree), loose);
+        assertEquals(loose, strings(PatchBundle.INSTANCE.readAll(patchesDir, "1.20", true)));
+        assertEquals(2, PatchBundle.INSTANCE.count(patchesDir, "1.20", false));
+        assertEquals(2, PatchBundle.INSTANCE.count(patchesDir, "1.20", true));
+
+        Path unpacked = tmp.resolve("unpacked");
+        assertEquals(2, PatchBundle.INSTANCE.unpack(bundle, unpacked.toFile()));
+        assertEquals(loose, tree(unpacked));
+    }
+
+    @Test
+    void packedBundlesAreReproducible() throws IOException {
+        Path tree = tmp.resolve("tree");
+        write(tree.resolve("b.patch"), "b");
+        write(tree.resolve("a/a.patch"), "a");
+
+        File first = tmp.resolve("first.zip").toFile();
+        File second = tmp.resolve("second.zip").toFile();
+        PatchBundle.INSTANCE.pack(tree.toFile(), first);
+        Files.setLastModifiedTime(tree.resolve("b.patch"), FileTime.fromMillis(0));
+        PatchBundle.INSTANCE.pack(tree.toFile(), second);
+
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    void readerReadsSinglePatches() throws IOException {
+        Path tree = tmp.resolve("tree");
+        write(tree.resolve("src/Main.java.patch"), "main");
+        File bundle = tmp.resolve("bundle.zip").toFile();
+        PatchBundle.INSTANCE.pack(tree.toFile(), bundle);
+
+        try (PatchBundle.Reader reader = PatchBundle.INSTANCE.open(bundle)) {
+            assertEquals("main", new String(reader.read("src/Main.java.patch"), StandardCharsets.UTF_8));
+            assertNull(reader.read("src/Missing.java.patch"));
+        }
+
+        // A missing bundle reads as empty
+        try (PatchBundle.Reader reader = PatchBundle.INSTANCE.open(tmp.resolve("missing.zip").toFile())) {
+            assertNull(reader.read("src/Main.java.patch"));
+        }
+        assertTrue(PatchBundle.INSTANCE.readAll(tmp.toFile(), "missing", true).isEmpty());
+        assertEquals(0, PatchBundle.INSTANCE.count(tmp.toFile(), "missing", true));
+    }
+
+    private static Map<String, String> strings(Map<String, byte[]> patches) {
+        Map<String, String> strings = new TreeMap<>();
+        patches.forEach((name, patch) -> strings.put(name, new String(patch, StandardCharsets.UTF_8)));
+        return strings;
+    }
+}
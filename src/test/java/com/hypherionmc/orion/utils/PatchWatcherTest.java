@@ -0,0 +1,69 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static com.hypherionmc.orion.utils.PortingFixture.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatchWatcherTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void savedFilesRegenerateOnlyTheirPatch() throws Exception {
+        try (PortingFixture fixture = new PortingFixture(tmp, "1.20")) {
+            String main = lines("class Main {", "    int a = 1;", "}");
+            String other = lines("class Other {}");
+            fixture.commit("Start", "src/Main.java", main, "src/Other.java", other);
+            fixture.patch("1.20", "src/Other.java", other, lines("class Other { int b; }"));
+            Patcher.INSTANCE.checkoutUpstreamBranch(fixture.project, "main", fixture.extension, null, true);
+
+            Path patches = fixture.extension.getPatchesDir().toPath().resolve("1.20");
+            Path otherPatch = patches.resolve("src/Other.java.patch");
+            String otherBefore = read(otherPatch);
+
+            Thread thread;
+            try (PatchWatcher watcher = new PatchWatcher(fixture.project, fixture.extension)) {
+                thread = new Thread(() -> {
+                    try {
+                        watcher.watch();
+                    } catch (Exception ignored) {
+                        // Closing the watcher ends the loop
+                    }
+                });
+                thread.start();
+
+                // Give the watcher time to register its directories, then save a change
+                Path mainPatch = patches.resolve("src/Main.java.patch");
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+                while (!Files.exists(mainPatch) && System.nanoTime() < deadline) {
+                    write(fixture.workspace("1.20").resolve("src/Main.java"), lines("class Main {", "    int a = 2;", "}"));
+                    Thread.sleep(500);
+                }
+
+                assertTrue(Files.exists(mainPatch), "patch was not generated");
+                String patch = read(mainPatch);
+                assertTrue(patch.contains("+    int a = 2;"), patch);
+            }
+
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(thread.isAlive());
+
+            // Other patches are left alone
+            assertEquals(otherBefore, read(otherPatch));
+        }
+    }
+}
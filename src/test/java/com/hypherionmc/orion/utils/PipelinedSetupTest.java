@@ -0,0 +1,86 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static com.hypherionmc.orion.utils.PortingFixture.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelinedSetupTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void pipelinedSetupMatchesApplyingPatches() throws Exception {
+        try (PortingFixture fixture = new PortingFixture(tmp, "1.20")) {
+            fixture.extension.getDetectRenames().set(true);
+
+            String moved = lines("package old;", "", "class Moved {", "    int a = 1;", "    int b = 2;", "    int c = 3;", "    int d = 4;", "}");
+            String main = lines("class Main {", "    int a = 1;", "}");
+            fixture.commit("Start", "src/old/Moved.java", moved, "src/Main.java", main, "src/Deleted.java", lines("class Deleted {}"), "src/Keep.java", lines("class Keep {}"));
+            Patcher.INSTANCE.checkoutUpstreamBranch(fixture.project, "main", fixture.extension, null, true);
+
+            // A moved file, a new file and a deleted file
+            Path workspace = fixture.workspace("1.20");
+            Files.delete(workspace.resolve("src/old/Moved.java"));
+            write(workspace.resolve("src/moved/Moved.java"), moved.replace("package old;", "package moved;"));
+            write(workspace.resolve("src/Added.java"), lines("class Added {}"));
+            Files.delete(workspace.resolve("src/Deleted.java"));
+            Patcher.INSTANCE.generatePatches(fixture.project, "1.20", fixture.extension);
+
+            // A patch made against a different upstream, so its hunk rejects
+            fixture.patch("1.20", "src/Main.java", lines("class Main {", "    long a = 1;", "}"), lines("class Main {", "    long a = 2;", "}"));
+
+            // Large files are read back from the upstream directory instead of being held in memory
+            StringBuilder large = new StringBuilder();
+            while (large.length() < PipelinedSetup.STREAM_THRESHOLD)
+                large.append(lines("line " + large.length()));
+            fixture.commit("Large files", "assets/large.txt", large.toString(), "assets/copied.txt", large.toString());
+            fixture.patch("1.20", "assets/large.txt", large.toString(), large.toString().replaceFirst("line 0", "first line"));
+
+            fixture.extension.getPipelinedSetup().set(false);
+            Map<String, String> sequential = setUp(fixture);
+            Map<String, String> sequentialRejects = tree(fixture.rejects("1.20"));
+
+            fixture.extension.getPipelinedSetup().set(true);
+            Map<String, String> pipelined = setUp(fixture);
+            Map<String, String> pipelinedRejects = tree(fixture.rejects("1.20"));
+
+            assertEquals(sequential, pipelined);
+            assertTrue(pipelined.containsKey("src/moved/Moved.java"), pipelined::toString);
+            assertTrue(pipelined.containsKey("src/Added.java"), pipelined::toString);
+            assertFalse(pipelined.containsKey("src/old/Moved.java"), pipelined::toString);
+            assertFalse(pipelined.containsKey("src/Deleted.java"), pipelined::toString);
+            assertEquals(main, pipelined.get("src/Main.java"));
+            assertTrue(pipelined.get("assets/large.txt").startsWith("first line"));
+
+            // DiffPatch formats rejected hunks its own way, so only compare which patches rejected
+            assertEquals(sequentialRejects.keySet(), pipelinedRejects.keySet());
+            assertEquals(Collections.singleton("src/Main.java.patch"), pipelinedRejects.keySet());
+            assertEquals("src/Main.java\n", read(fixture.rejects("1.20").resolveSibling("1.20.rejects")));
+        }
+    }
+
+    /**
+     * Set up the workspace from scratch, and read it back
+     */
+    private static Map<String, String> setUp(PortingFixture fixture) throws Exception {
+        FileUtils.deleteDirectory(fixture.workspace("1.20").toFile());
+        FileUtils.deleteDirectory(fixture.upstream().toFile());
+        Patcher.INSTANCE.checkoutUpstreamBranch(fixture.project, "main", fixture.extension, null, true);
+        return tree(fixture.workspace("1.20"));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gradle.api.GradleException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.hypherionmc.orion.utils.PortingFixture.lines;
+import static com.hypherionmc.orion.utils.PortingFixture.read;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PortRangeTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void commitRefStaysOnTheLastCleanCommit() throws Exception {
+        try (PortingFixture fixture = new PortingFixture(tmp, "1.20")) {
+            String main = lines("class Main {", "    int a = 1;", "    int b = 2;", "}");
+            fixture.commit("Start", "src/Main.java", main, "src/Other.java", lines("class Other {}"));
+            fixture.patch("1.20", "src/Main.java", main, lines("class Main {", "    int a = 1;", "    int b = 20;", "}"));
+            Patcher.INSTANCE.checkoutUpstreamBranch(fixture.project, "main", fixture.extension, null, true);
+
+            RevCommit clean = fixture.commit("Clean", "src/Other.java", lines("class Other { int c; }"));
+            String conflicting = lines("class Main {", "    int a = 1;", "    long b = 2;", "}");
+            RevCommit head = fixture.commit("Conflict", "src/Main.java", conflicting);
+
+            assertThrows(GradleException.class, () -> Patcher.INSTANCE.portRange(fixture.project, fixture.extension));
+
+            // The clean commit is ported, the rejecting one is replayed by the next run
+            assertEquals(clean.getName(), read(fixture.extension.getCommitFile().toPath()).trim());
+            assertEquals(lines("class Other { int c; }"), read(fixture.workspace("1.20").resolve("src/Other.java")));
+            assertTrue(Files.exists(fixture.rejects("1.20").resolve("src/Main.java.patch")));
+
+            // Once the patch is fixed, the next run replays the rejecting commit and moves the ref
+            String fixed = lines("class Main {", "    int a = 1;", "    long b = 20;", "}");
+            fixture.patch("1.20", "src/Main.java", conflicting, fixed);
+            Patcher.INSTANCE.portRange(fixture.project, fixture.extension);
+
+            assertEquals(head.getName(), read(fixture.extension.getCommitFile().toPath()).trim());
+            assertEquals(fixed, read(fixture.workspace("1.20").resolve("src/Main.java")));
+            assertFalse(Files.exists(fixture.rejects("1.20").resolve("src/Main.java.patch")));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import com.hypherionmc.orion.plugin.porting.OrionPortingExtension;
+import com.hypherionmc.orion.utils.diff.HistogramDiffEngine;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * A root project with a git repository and a porting extension, for tests that port, patch and diff real trees
+ */
+class PortingFixture implements AutoCloseable {
+
+    final Path root;
+    final Project project;
+    final OrionPortingExtension extension;
+    final Git git;
+
+    PortingFixture(Path root, String... branches) throws GitAPIException {
+        this.root = root;
+        this.git = Git.init().setDirectory(root.toFile()).setInitialBranch("main").call();
+        this.project = ProjectBuilder.builder().withProjectDir(root.toFile()).build();
+        this.extension = project.getExtensions().create("orionporting", OrionPortingExtension.class, project);
+
+        extension.getUpstreamBranch().set("main");
+        extension.getDiffEngine().set(HistogramDiffEngine.NAME);
+        extension.porting(branches);
+    }
+
+    /**
+     * Commit upstream files to the repository
+     * @param files Alternating repository relative paths and contents. A null content deletes the file
+     */
+    RevCommit commit(String message, String... files) throws IOException, GitAPIException {
+        for (int i = 0; i < files.length; i += 2) {
+            if (files[i + 1] == null) {
+                git.rm().addFilepattern(files[i]).call();
+            } else {
+                write(root.resolve(files[i]), files[i + 1]);
+                git.add().addFilepattern(files[i]).call();
+            }
+        }
+
+        return git.commit().setMessage(message).call();
+    }
+
+    /**
+     * Write a patch for a branch, as the histogram engine would generate it
+     */
+    void patch(String branch, String path, String original, String modified) throws IOException {
+        byte[] patch = HistogramDiffEngine.diff(path, original == null ? null : bytes(original), modified == null ? null : bytes(modified));
+        Path file = extension.getPatchesDir().toPath().resolve(branch).resolve(path + ".patch");
+        Files.createDirectories(file.getParent());
+        Files.write(file, patch);
+    }
+
+    Path upstream() {
+        return extension.getUpstreamDir().toPath();
+    }
+
+    Path workspace(String branch) {
+        return extension.getWorkspaceDir(branch).toPath();
+    }
+
+    Path rejects(String branch) {
+        return extension.getRejectsDir().toPath().resolve(branch);
+    }
+
+    @Override
+    public void close() {
+        git.close();
+    }
+
+    static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes(content));
+    }
+
+    static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read every file of a tree, keyed by its relative path
+     */
+    static Map<String, String> tree(Path root) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        if (!Files.isDirectory(root))
+            return files;
+
+        try (Stream<Path> stream = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) stream.filter(Files::isRegularFile)::iterator) {
+                files.put(root.relativize(file).toString().replace(File.separatorChar, '/'), read(file));
+            }
+        }
+        return files;
+    }
+
+    static String lines(String... lines) {
+        StringBuilder builder = new StringBuilder();
+        for (String line : lines) {
+            builder.append(line).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.gradle.internal.logging.progress.ProgressLogger;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressReporterTest {
+
+    @Test
+    void nothingIsReportedAfterCompletion() {
+        List<String> calls = new ArrayList<>();
+        ProgressReporter reporter = new ProgressReporter(logger(calls), "files", 4, null);
+
+        reporter.refresh();
+        assertTrue(calls.get(0).startsWith("progress 0/4 files, 0s elapsed"), calls::toString);
+
+        reporter.step();
+        reporter.step(2);
+        reporter.refresh();
+        assertTrue(calls.get(1).startsWith("progress 3/4 files, "), calls::toString);
+
+        reporter.close();
+        reporter.close();
+        reporter.refresh();
+
+        assertEquals(3, calls.size(), calls::toString);
+        assertEquals("completed", calls.get(2));
+    }
+
+    private ProgressLogger logger(List<String> calls) {
+        return (ProgressLogger) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ProgressLogger.class}, (proxy, method, args) -> {
+            calls.add(method.getName() + (method.getName().equals("progress") ? " " + args[0] : ""));
+            return method.getReturnType() == ProgressLogger.class ? proxy : null;
+        });
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Publishes to a local HTTP stand-in for a maven repository, and checks unchanged publications are skipped
+ */
+class PublishingServiceTest {
+
+    private static final String TASK = ":publishMavenPublicationToStandInRepository";
+
+    @TempDir
+    Path tmp;
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final AtomicInteger jarUploads = new AtomicInteger();
+    private final Set<String> servedChecksums = ConcurrentHashMap.newKeySet();
+    private HttpServer server;
+
+    // Repositories that only store the SHA-1 and MD5 checksums
+    private volatile boolean legacyChecksums = false;
+
+    @BeforeEach
+    void startRepository() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopRepository() {
+        server.stop(0);
+    }
+
+    @Test
+    void unchangedPublicationsAreSkipped() throws IOException {
+        publishUnchangedAndChanged();
+        assertTrue(servedChecksums.stream().anyMatch(p -> p.endsWith(".jar.sha256")), servedChecksums::toString);
+        assertFalse(servedChecksums.stream().anyMatch(p -> p.endsWith(".jar.sha1")), servedChecksums::toString);
+    }
+
+    @Test
+    void sha1IsUsedWithoutSha256() throws IOException {
+        legacyChecksums = true;
+        publishUnchangedAndChanged();
+        assertTrue(servedChecksums.stream().anyMatch(p -> p.endsWith(".jar.sha1")), servedChecksums::toString);
+    }
+
+    private void publishUnchangedAndChanged() throws IOException {
+        write("settings.gradle", "rootProject.name = 'library'\n");
+        write("build.gradle", "plugins {\n" +
+                "    id 'java'\n" +
+                "    id 'maven-publish'\n" +
+                "    id 'com.hypherionmc.modutils.orion'\n" +
+                "}\n" +
+                "\n" +
+                "group = 'org.example'\n" +
+                "\n" +
+                "orion.setup {\n" +
+                "    enableReleasesMaven = false\n" +
+                "    enableSnapshotsMaven = false\n" +
+                "    enableMirrorMaven = false\n" +
+                "    skipUnchangedPublishing = true\n" +
+                "}\n" +
+                "\n" +
+                "publishing {\n" +
+                "    publications {\n" +
+                "        maven(MavenPublication) {\n" +
+                "            from components.java\n" +
+                "        }\n" +
+                "    }\n" +
+                "    repositories {\n" +
+                "        maven {\n" +
+                "            name = 'StandIn'\n" +
+                "            url = 'http://127.0.0.1:" + server.getAddress().getPort() + "/'\n" +
+                "            allowInsecureProtocol = true\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n");
+        write("src/main/java/org/example/Library.java", "package org.example;\n\npublic class Library {}\n");
+
+        assertEquals(TaskOutcome.SUCCESS, run("publish").task(TASK).getOutcome());
+        assertEquals(1, jarUploads.get());
+
+        // The rebuilt jar is reproducible, so its checksum still matches the published one
+        assertEquals(TaskOutcome.SKIPPED, run("clean", "publish").task(TASK).getOutcome());
+        assertEquals(1, jarUploads.get());
+
+        write("src/main/java/org/example/Library.java", "package org.example;\n\npublic class Library {\n    public static final int VERSION = 2;\n}\n");
+        assertEquals(TaskOutcome.SUCCESS, run("publish").task(TASK).getOutcome());
+        assertEquals(2, jarUploads.get());
+    }
+
+    private BuildResult run(String... arguments) {
+        return GradleRunner.create()
+                .withProjectDir(tmp.toFile())
+                .withPluginClasspath()
+                .withArguments(arguments)
+                .forwardOutput()
+                .build();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+
+        try {
+            if ("PUT".equals(exchange.getRequestMethod())) {
+                byte[] content = readAll(exchange.getRequestBody());
+                if (!legacyChecksums || !(path.endsWith(".sha256") || path.endsWith(".sha512")))
+                    files.put(path, content);
+                if (path.endsWith(".jar"))
+                    jarUploads.incrementAndGet();
+
+                exchange.sendResponseHeaders(201, -1);
+                return;
+            }
+
+            byte[] content = files.get(path);
+            if (content == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            if ("GET".equals(exchange.getRequestMethod()) && (path.endsWith(".sha1") || path.endsWith(".sha256")))
+                servedChecksums.add(path);
+
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, content.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = tmp.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.hypherionmc.orion.utils.PortingFixture.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReapplyRejectsTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void onlyRejectedPatchesAreApplied() throws Exception {
+        try (PortingFixture fixture = new PortingFixture(tmp, "1.20")) {
+            String main = lines("class Main {", "    int a = 1;", "}");
+            String other = lines("class Other {", "    int b = 1;", "}");
+            fixture.commit("Start", "src/Main.java", main, "src/Other.java", other);
+
+            // The Main patch was made against a different upstream, so it rejects
+            fixture.patch("1.20", "src/Main.java", lines("class Main {", "    long a = 1;", "}"), lines("class Main {", "    long a = 2;", "}"));
+            fixture.patch("1.20", "src/Other.java", other, lines("class Other {", "    int b = 2;", "}"));
+            Patcher.INSTANCE.checkoutUpstreamBranch(fixture.project, "main", fixture.extension, null, true);
+
+            assertTrue(Files.exists(fixture.rejects("1.20").resolve("src/Main.java.patch")));
+            Path summary = fixture.rejects("1.20").resolveSibling("1.20.rejects");
+            assertEquals("src/Main.java\n", read(summary));
+
+            // Local edits to files without rejects must survive
+            Path otherFile = fixture.workspace("1.20").resolve("src/Other.java");
+            String edited = lines("class Other {", "    int b = 3;", "}");
+            write(otherFile, edited);
+
+            fixture.patch("1.20", "src/Main.java", main, lines("class Main {", "    int a = 2;", "}"));
+            assertEquals(0, Patcher.INSTANCE.reapplyRejects(fixture.project, "1.20", fixture.extension));
+
+            assertEquals(lines("class Main {", "    int a = 2;", "}"), read(fixture.workspace("1.20").resolve("src/Main.java")));
+            assertEquals(edited, read(otherFile));
+            assertFalse(Files.exists(fixture.rejects("1.20").resolve("src/Main.java.patch")));
+            assertFalse(Files.exists(summary));
+
+            // Nothing is left to re-apply
+            assertEquals(0, Patcher.INSTANCE.reapplyRejects(fixture.project, "1.20", fixture.extension));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static com.hypherionmc.orion.utils.PortingFixture.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenameTrackerTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void movedFilesRoundTrip() throws Exception {
+        try (PortingFixture fixture = new PortingFixture(tmp, "1.20")) {
+            fixture.extension.getDetectRenames().set(true);
+
+            String old = lines("package old;", "", "class Moved {", "    int a = 1;", "    int b = 2;", "    int c = 3;", "    int d = 4;", "}");
+            fixture.commit("Start", "src/old/Moved.java", old, "src/Keep.java", lines("class Keep {}"));
+            Patcher.INSTANCE.checkoutUpstreamBranch(fixture.project, "main", fixture.extension, null, true);
+
+            // Move a file to another package and change it a little, and edit a file that stays in place
+            Path workspace = fixture.workspace("1.20");
+            Files.delete(workspace.resolve("src/old/Moved.java"));
+            write(workspace.resolve("src/moved/Moved.java"), old.replace("package old;", "package moved;"));
+            write(workspace.resolve("src/Keep.java"), lines("class Keep { int k; }"));
+            Map<String, String> expected = tree(workspace);
+
+            Patcher.INSTANCE.generatePatches(fixture.project, "1.20", fixture.extension);
+
+            File manifest = RenameTracker.INSTANCE.getManifest(fixture.extension.getPatchesDir(), "1.20");
+            RenameTracker.Rename rename = RenameTracker.INSTANCE.read(manifest).get("src/moved/Moved.java");
+            assertNotNull(rename);
+            assertEquals("src/old/Moved.java", rename.getSource());
+            assertFalse(rename.isCopy());
+
+            // The moved file only gets a patch for its content change, not a delete and a full add
+            Path patches = fixture.extension.getPatchesDir().toPath().resolve("1.20");
+            assertFalse(Files.exists(patches.resolve("src/old/Moved.java.patch")));
+            String patch = read(patches.resolve("src/moved/Moved.java.patch"));
+            assertFalse(patch.contains("/dev/null"), patch);
+            assertTrue(patch.contains("+package moved;"), patch);
+
+            FileUtils.deleteDirectory(workspace.toFile());
+            Patcher.INSTANCE.applyPatches(fixture.project, "1.20", fixture.extension);
+            assertEquals(expected, tree(workspace));
+        }
+    }
+}
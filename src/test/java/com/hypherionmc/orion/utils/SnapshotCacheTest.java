@@ -0,0 +1,97 @@
+/*
+ * This file is part of orion, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) 2024 HypherionSA and Contributors
+ *
+ */
+package com.hypherionmc.orion.utils;
+
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import static com.hypherionmc.orion.utils.PortingFixture.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotCacheTest {
+
+    private static final String MAIN = "aa00000000000000000000000000000000000001";
+    private static final String OTHER = "bb00000000000000000000000000000000000002";
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void restoredFilesAreHardLinked() throws IOException {
+        SnapshotCache cache = cache(Long.MAX_VALUE, true);
+        store(cache, "first", MAIN, "src/Main.java", "class Main {}");
+
+        Path target = tmp.resolve("restored");
+        assertTrue(cache.restore("first", target));
+        assertEquals("class Main {}", read(target.resolve("src/Main.java")));
+        assertEquals(fileKey(object(MAIN)), fileKey(target.resolve("src/Main.java")));
+
+        assertFalse(cache.restore("missing", target));
+    }
+
+    @Test
+    void withoutHardLinksFilesAreCopied() throws IOException {
+        SnapshotCache cache = cache(Long.MAX_VALUE, false);
+        store(cache, "first", MAIN, "src/Main.java", "class Main {}");
+
+        Path target = tmp.resolve("restored");
+        assertTrue(cache.restore("first", target));
+        assertEquals("class Main {}", read(target.resolve("src/Main.java")));
+        assertNotEquals(fileKey(object(MAIN)), fileKey(target.resolve("src/Main.java")));
+    }
+
+    @Test
+    void leastRecentlyUsedSnapshotsAreEvicted() throws IOException {
+        String content = String.format("%100s", "class Main {}");
+        SnapshotCache cache = cache(150, true);
+
+        store(cache, "first", MAIN, "src/Main.java", content);
+        Files.setLastModifiedTime(tmp.resolve("cache/commits/first"), FileTime.fromMillis(0));
+
+        // Another build is still moving this object into place
+        Path inFlight = tmp.resolve("cache/objects/cc/inflight.tmp");
+        write(inFlight, content);
+
+        store(cache, "second", OTHER, "src/Other.java", content.replace("Main", "Other"));
+
+        assertFalse(Files.exists(tmp.resolve("cache/commits/first")));
+        assertFalse(Files.exists(object(MAIN)));
+        assertTrue(Files.exists(object(OTHER)));
+        assertTrue(Files.exists(inFlight));
+
+        assertFalse(cache.restore("first", tmp.resolve("first")));
+        assertTrue(cache.restore("second", tmp.resolve("second")));
+    }
+
+    private SnapshotCache cache(long maxSize, boolean hardLinks) {
+        return new SnapshotCache(tmp.resolve("cache").toFile(), maxSize, Logging.getLogger(SnapshotCacheTest.class), hardLinks);
+    }
+
+    private void store(SnapshotCache cache, String commitId, String blobId, String path, String content) throws IOException {
+        Path file = tmp.resolve("upstream-" + commitId).resolve(path);
+        write(file, content);
+
+        SnapshotCache.Writer writer = cache.store(commitId);
+        writer.add(blobId, path, file);
+        writer.commit();
+    }
+
+    private Path object(String blobId) {
+        return tmp.resolve("cache/objects").resolve(blobId.substring(0, 2)).resolve(blobId.substring(2));
+    }
+
+    private static Object fileKey(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+    }
+}